@@ -0,0 +1,322 @@
+package bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs benchmarks the way JMH does in throughput mode: every benchmark is run for a number of warmup
+ * iterations that are thrown away, then for a number of measured iterations of a fixed duration, and
+ * the operations per second of the measured iterations are reported with their 99.9% confidence
+ * interval. Like JMH's {@code -prof gc}, the bytes allocated per operation are measured as well.
+ * <p>
+ * Results are printed as a table and can be written as JSON in the format of JMH, so that the tools
+ * made for comparing JMH results can be used on them.
+ * <p>
+ * Unlike JMH, benchmarks run in the virtual machine of the runner rather than in a fresh fork, so
+ * benchmarks run earlier can influence the compilation of those run later. Compare results of the
+ * same benchmark run in the same order.
+ */
+public class BenchmarkRunner {
+    /**
+     * An operation to measure, prepared for one iteration.
+     */
+    public interface Operation {
+        /**
+         * Performs the operation once.
+         *
+         * @return any result of the operation, which is consumed so that it cannot be optimised away
+         */
+        Object run();
+    }
+
+    /**
+     * The measurements of a single benchmark.
+     */
+    public static final class Result {
+        public final String benchmark;
+        public final Map<String, String> params;
+        /**
+         * The operations per second and the bytes allocated per operation in each measured iteration.
+         */
+        public final double[] throughput;
+        public final double[] allocation;
+
+        Result(String benchmark, Map<String, String> params, double[] throughput, double[] allocation) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.throughput = throughput;
+            this.allocation = allocation;
+        }
+
+        public double score() {
+            return mean(throughput);
+        }
+
+        /**
+         * Returns the half width of the 99.9% confidence interval of the score.
+         */
+        public double error() {
+            return BenchmarkRunner.error(throughput);
+        }
+
+        public double allocationPerOperation() {
+            return mean(allocation);
+        }
+    }
+
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private int warmupIterations = 3;
+    private int measurementIterations = 5;
+    private long iterationMillis = 1000;
+    private Pattern include = Pattern.compile(".*");
+    private final List<Result> results = new ArrayList<>();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    /**
+     * Receives the results of the operations, so that the compiler cannot drop them.
+     */
+    private volatile Object sink;
+
+    public void setWarmupIterations(int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+    }
+
+    public void setMeasurementIterations(int measurementIterations) {
+        if (measurementIterations < 1) {
+            throw new IllegalArgumentException("At least one iteration has to be measured");
+        }
+        this.measurementIterations = measurementIterations;
+    }
+
+    public void setIterationMillis(long iterationMillis) {
+        this.iterationMillis = iterationMillis;
+    }
+
+    /**
+     * Only runs the benchmarks whose name contains a match of the given regular expression.
+     */
+    public void setInclude(String regex) {
+        include = Pattern.compile(regex);
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Runs a benchmark, unless it is excluded, and prints its result. The standard output is silenced
+     * while the benchmark runs, since the game reports every event on it.
+     *
+     * @param benchmark the name of the benchmark
+     * @param params    the parameters of this run of the benchmark, such as the map it runs on
+     * @param setup     prepares the operation for an iteration; it is called before every iteration,
+     *                  and the time it takes is not measured
+     */
+    public void run(String benchmark, Map<String, String> params, Supplier<Operation> setup) {
+        if (!include.matcher(benchmark).find()) {
+            return;
+        }
+        double[] throughput = new double[measurementIterations];
+        double[] allocation = new double[measurementIterations];
+        PrintStream out = System.out;
+        System.setOut(NULL_OUT);
+        try {
+            long batch = 1;
+            for (int i = 0; i < warmupIterations + measurementIterations; i++) {
+                Operation operation = setup.get();
+                long allocatedBefore = allocatedBytes();
+                long operations = 0;
+                long start = System.nanoTime();
+                long deadline = start + iterationMillis * 1_000_000;
+                long now = start;
+                do {
+                    long batchStart = now;
+                    for (long k = 0; k < batch; k++) {
+                        sink = operation.run();
+                    }
+                    operations += batch;
+                    now = System.nanoTime();
+                    // read the clock about once per millisecond, so that it does not slow down fast operations
+                    if (now - batchStart < 1_000_000) {
+                        batch = Math.min(batch * 2, 1 << 20);
+                    }
+                } while (now < deadline);
+                long allocated = allocatedBytes() - allocatedBefore;
+                if (i >= warmupIterations) {
+                    int m = i - warmupIterations;
+                    throughput[m] = operations / ((now - start) / 1e9);
+                    allocation[m] = allocatedBefore < 0 ? Double.NaN : (double) allocated / operations;
+                }
+            }
+        } finally {
+            System.setOut(out);
+        }
+        Result result = new Result(benchmark, params, throughput, allocation);
+        results.add(result);
+        System.out.println(format(result));
+    }
+
+    /**
+     * Returns the header of the table the results are printed as.
+     */
+    public static String header() {
+        return String.format(Locale.ROOT, "%-28s %-14s %14s %12s %12s", "Benchmark", "Params", "ops/s", "error", "B/op");
+    }
+
+    private static String format(Result r) {
+        return String.format(Locale.ROOT, "%-28s %-14s %14.1f %12.1f %12.1f", r.benchmark,
+                String.join(",", r.params.values()), r.score(), r.error(), r.allocationPerOperation());
+    }
+
+    /**
+     * Writes the results of all benchmarks run so far as JSON, in the format JMH writes with {@code -rf json}.
+     */
+    public void writeJson(Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path)) {
+            out.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("benchmark", r.benchmark);
+                entry.put("mode", "thrpt");
+                entry.put("threads", 1);
+                entry.put("forks", 0);
+                entry.put("warmupIterations", warmupIterations);
+                entry.put("warmupTime", iterationMillis + " ms");
+                entry.put("measurementIterations", measurementIterations);
+                entry.put("measurementTime", iterationMillis + " ms");
+                entry.put("params", r.params);
+                entry.put("primaryMetric", metric(r.throughput, "ops/s"));
+                Map<String, Object> secondary = new LinkedHashMap<>();
+                secondary.put("\u00b7gc.alloc.rate.norm", metric(r.allocation, "B/op"));
+                double[] rate = new double[r.allocation.length];
+                for (int k = 0; k < rate.length; k++) {
+                    rate[k] = r.allocation[k] * r.throughput[k] / (1024 * 1024);
+                }
+                secondary.put("\u00b7gc.alloc.rate", metric(rate, "MB/sec"));
+                entry.put("secondaryMetrics", secondary);
+                out.write(json(entry, "    "));
+                out.write(i < results.size() - 1 ? ",\n" : "\n");
+            }
+            out.write("]\n");
+        }
+    }
+
+    private static Map<String, Object> metric(double[] values, String unit) {
+        Map<String, Object> metric = new LinkedHashMap<>();
+        double score = mean(values);
+        double error = error(values);
+        metric.put("score", score);
+        metric.put("scoreError", error);
+        metric.put("scoreConfidence", List.of(score - error, score + error));
+        metric.put("scoreUnit", unit);
+        List<Double> raw = new ArrayList<>();
+        for (double v : values) {
+            raw.add(v);
+        }
+        metric.put("rawData", List.of(raw));
+        return metric;
+    }
+
+    private static String json(Object value, String indent) {
+        if (value instanceof Map<?, ?> map) {
+            StringBuilder sb = new StringBuilder("{\n");
+            int i = 0;
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                sb.append(indent).append("    ").append(quote(e.getKey().toString())).append(" : ")
+                        .append(json(e.getValue(), indent + "    "));
+                sb.append(++i < map.size() ? ",\n" : "\n");
+            }
+            return sb.append(indent).append('}').toString();
+        } else if (value instanceof List<?> list) {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < list.size(); i++) {
+                sb.append(i > 0 ? ", " : "").append(json(list.get(i), indent));
+            }
+            return sb.append(']').toString();
+        } else if (value instanceof Double d) {
+            // JSON has no NaN or infinity, JMH writes them as strings
+            return d.isNaN() || d.isInfinite() ? quote(d.toString()) : d.toString();
+        } else if (value instanceof Number) {
+            return value.toString();
+        }
+        return quote(value.toString());
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean t && t.isThreadAllocatedMemoryEnabled()) {
+            return t.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * Returns the half width of the 99.9% confidence interval of the mean of the given values, using
+     * Student's t-distribution like JMH, or NaN for a single value.
+     */
+    private static double error(double[] values) {
+        int n = values.length;
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        double deviation = Math.sqrt(squares / (n - 1));
+        return studentT999(n - 1) * deviation / Math.sqrt(n);
+    }
+
+    /**
+     * Returns the two-sided 99.9% quantile of Student's t-distribution with the given degrees of freedom.
+     */
+    private static double studentT999(int degreesOfFreedom) {
+        double[] quantiles = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+                4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850};
+        if (degreesOfFreedom <= quantiles.length) {
+            return quantiles[degreesOfFreedom - 1];
+        }
+        return degreesOfFreedom <= 30 ? 3.646 : degreesOfFreedom <= 60 ? 3.460 : 3.291;
+    }
+}
@@ -0,0 +1,209 @@
+package bench;
+
+import model.Element;
+import model.EndOfPipe;
+import model.Game;
+import model.GameLog;
+import model.MapGenerator;
+import model.Pipe;
+import model.Plumber;
+import model.Pump;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks of the hot paths of the model: updating single pipes, pumps, springs and cisterns, a
+ * full tick over the element list and through the engine, inserting a pump into a pipe, and finding
+ * the element under the mouse as the map does when it is clicked. Every benchmark runs on the
+ * default map and on generated maps of the requested sizes.
+ * <p>
+ * Run it from the root of the project, so that the default map is found:
+ * <pre>
+ * java bench.ModelBenchmarks [--maps default,10000,100000] [--include REGEX] [--warmup N]
+ *                            [--iterations N] [--time MILLIS] [--json FILE]
+ * </pre>
+ */
+public class ModelBenchmarks {
+    private final BenchmarkRunner runner;
+
+    public ModelBenchmarks(BenchmarkRunner runner) {
+        this.runner = runner;
+    }
+
+    public static void main(String[] args) throws IOException {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        List<String> maps = List.of("default", "10000");
+        Path json = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--maps" -> maps = List.of(args[++i].split(","));
+                case "--include" -> runner.setInclude(args[++i]);
+                case "--warmup" -> runner.setWarmupIterations(Integer.parseInt(args[++i]));
+                case "--iterations" -> runner.setMeasurementIterations(Integer.parseInt(args[++i]));
+                case "--time" -> runner.setIterationMillis(Long.parseLong(args[++i]));
+                case "--json" -> json = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        GameLog.shared().removeSink(GameLog.STANDARD_OUTPUT); // the events of the games are not of interest
+        System.out.println(BenchmarkRunner.header());
+        ModelBenchmarks benchmarks = new ModelBenchmarks(runner);
+        for (String map : maps) {
+            benchmarks.runAll(map);
+        }
+        if (json != null) {
+            runner.writeJson(json);
+            System.out.println("Results written to " + json);
+        }
+    }
+
+    /**
+     * Runs every benchmark on the given map.
+     *
+     * @param map "default" for the default map, or the number of elements of a generated map
+     */
+    public void runAll(String map) {
+        Map<String, String> params = Map.of("map", map);
+        Supplier<Game> games = () -> createGame(map);
+        Game game = games.get();
+
+        runner.run("Pipe.update", params, () -> cycle(game.pipeList));
+        runner.run("Pump.update", params, () -> cycle(game.pumpList));
+        runner.run("Spring.update", params, () -> cycle(game.springList));
+        runner.run("Cistern.update", params, () -> cycle(game.cisternList));
+        runner.run("tick.elementList", params, () -> () -> {
+            for (Element e : game.elementList) {
+                e.update();
+            }
+            return game;
+        });
+        Game engineGame = games.get();
+        runner.run("tick.engine", params, () -> () -> {
+            engineGame.engine.tick();
+            return engineGame;
+        });
+        runner.run("Plumber.insertPump", params, () -> insertPumps(games.get()));
+        runner.run("selectObjectAt", params, () -> selectObjects(game));
+    }
+
+    /**
+     * Creates a game on the default map or on a generated map of about the given number of elements.
+     */
+    static Game createGame(String map) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Game game = new Game();
+            if (map.equals("default")) {
+                game.initMap();
+            } else {
+                MapGenerator generator = new MapGenerator(1);
+                generator.setSize(Integer.parseInt(map));
+                generator.generate(game);
+            }
+            return game;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Returns an operation that updates the given elements one after the other, a single element per operation.
+     */
+    private static BenchmarkRunner.Operation cycle(List<? extends Element> elements) {
+        Element[] array = elements.toArray(new Element[0]);
+        int[] next = {0};
+        return () -> {
+            Element e = array[next[0]];
+            next[0] = next[0] + 1 == array.length ? 0 : next[0] + 1;
+            e.update();
+            return e;
+        };
+    }
+
+    /**
+     * Returns an operation that inserts a pump into one pipe of the given game after the other. A pipe
+     * is split only once, and the halves are only split after all pipes of the map have been.
+     */
+    private static BenchmarkRunner.Operation insertPumps(Game game) {
+        Plumber plumber = new Plumber("Benchmark");
+        List<Pipe> pipes = new ArrayList<>();
+        int[] next = {0};
+        return () -> {
+            Pipe pipe = null;
+            while (pipe == null) {
+                if (next[0] == pipes.size()) {
+                    pipes.clear();
+                    for (Pipe p : game.pipeList) {
+                        if (canInsertPump(p)) {
+                            pipes.add(p);
+                        }
+                    }
+                    next[0] = 0;
+                    if (pipes.isEmpty()) {
+                        throw new IllegalStateException("There is no pipe left to insert a pump into");
+                    }
+                }
+                Pipe p = pipes.get(next[0]++);
+                if (game.pipeList.contains(p)) {
+                    pipe = p;
+                }
+            }
+            plumber.currentElement = pipe;
+            plumber.pickedUpPump = new Pump("Picked up", new Point(0, 0));
+            plumber.insertPump(game);
+            return pipe;
+        };
+    }
+
+    /**
+     * Returns whether both ends of the given pipe are connected, as inserting a pump requires. The
+     * halves of a split pipe are connected to the new pump, so there are always pipes left to split,
+     * even if they become too short to be drawn.
+     */
+    private static boolean canInsertPump(Pipe pipe) {
+        for (EndOfPipe end : pipe.endsOfPipe) {
+            if (end == null || end.getConnectedElement() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns an operation that looks up the end of pipe or element at random points of the map, like
+     * {@code MapGUI.selectObjectAt} does with the point that was clicked.
+     */
+    private static BenchmarkRunner.Operation selectObjects(Game game) {
+        int width = 0;
+        int height = 0;
+        for (Element e : game.elementList) {
+            width = Math.max(width, e.getPosition().x + e.width);
+            height = Math.max(height, e.getPosition().y + e.height);
+        }
+        Random random = new Random(1);
+        int[] xs = new int[4096];
+        int[] ys = new int[4096];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = random.nextInt(width + 1);
+            ys[i] = random.nextInt(height + 1);
+        }
+        int[] next = {0};
+        return () -> {
+            int i = next[0];
+            next[0] = (i + 1) & (xs.length - 1);
+            EndOfPipe end = game.endOfPipeAt(xs[i], ys[i]);
+            return end != null ? end : game.elementAt(xs[i], ys[i]);
+        };
+    }
+}
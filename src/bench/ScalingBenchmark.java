@@ -0,0 +1,343 @@
+package bench;
+
+import gui.MapGUI;
+import model.Element;
+import model.EndOfPipe;
+import model.Game;
+import model.GameLog;
+import model.MapGenerator;
+import model.Pipe;
+import model.Player;
+import model.Plumber;
+import model.Pump;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Plays whole headless games on generated maps of growing size and reports how the engine scales:
+ * the turns played per second, the median and 99th percentile time of a turn, the most heap in use
+ * at any time, and the time it takes {@link MapGUI} to paint a frame on an offscreen image.
+ * <p>
+ * The players are scripted: in every turn the current player moves to a random neighbour of the
+ * element it stands on, then a Saboteur punctures the pipe it moved to and a Plumber fixes the pipe
+ * or pump it moved to, if they are broken. The script is seeded, so every run plays the same game.
+ * <p>
+ * A turn is one {@link model.GameEngine#step()}: the current player's actions, a tick of the pipe
+ * system and the end of the turn. Results are printed as a table, and written as CSV if requested:
+ * <pre>
+ * java bench.ScalingBenchmark [--sizes 10,100,1000,10000,100000,1000000] [--turns N] [--warmup N]
+ *                             [--time MILLIS] [--frames N] [--seed S] [--no-render] [--csv FILE]
+ * </pre>
+ * Run it from the root of the project, so that the images of the map are found. A map of a million
+ * elements needs about 1.5 GB of heap; give the virtual machine more, such as {@code -Xmx4g}, or its
+ * turns measure the garbage collector rather than the engine.
+ */
+public class ScalingBenchmark {
+    /**
+     * The size of the offscreen image frames are painted on, that of a large window.
+     */
+    private static final int FRAME_WIDTH = 1600;
+    private static final int FRAME_HEIGHT = 1200;
+
+    /**
+     * The measurements on a map of one size.
+     */
+    public static final class Row {
+        public int requestedSize;
+        public int elements;
+        public long generateMillis;
+        public int turns;
+        public double turnsPerSecond;
+        public double p50Micros;
+        public double p99Micros;
+        public long heapPeakBytes;
+        public int frames;
+        public double renderMillis = Double.NaN;
+    }
+
+    private int turns = 2000;
+    private int warmupTurns = 500;
+    private long maxMillis = 20_000;
+    private int frames = 10;
+    private long seed = 1;
+    private boolean render = true;
+
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true"); // frames are only painted offscreen
+        }
+        ScalingBenchmark benchmark = new ScalingBenchmark();
+        int[] sizes = {10, 100, 1000, 10_000, 100_000, 1_000_000};
+        Path csv = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--turns" -> benchmark.setTurns(Integer.parseInt(args[++i]));
+                case "--warmup" -> benchmark.setWarmupTurns(Integer.parseInt(args[++i]));
+                case "--time" -> benchmark.setMaxMillis(Long.parseLong(args[++i]));
+                case "--frames" -> benchmark.setFrames(Integer.parseInt(args[++i]));
+                case "--seed" -> benchmark.setSeed(Long.parseLong(args[++i]));
+                case "--no-render" -> benchmark.setRender(false);
+                case "--csv" -> csv = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        GameLog.shared().removeSink(GameLog.STANDARD_OUTPUT); // the events of the games are not of interest
+        List<Row> rows = new ArrayList<>();
+        System.out.println(header());
+        for (int size : sizes) {
+            Row row = benchmark.run(size);
+            rows.add(row);
+            System.out.println(format(row));
+        }
+        if (csv != null) {
+            writeCsv(rows, csv);
+            System.out.println("Results written to " + csv);
+        }
+        // the refresh timers of the painted maps keep the event dispatch thread alive
+        System.exit(0);
+    }
+
+    public void setTurns(int turns) {
+        if (turns < 1) {
+            throw new IllegalArgumentException("At least one turn has to be measured");
+        }
+        this.turns = turns;
+    }
+
+    public void setWarmupTurns(int warmupTurns) {
+        this.warmupTurns = warmupTurns;
+    }
+
+    /**
+     * Limits the time spent playing on a single map; fewer turns are measured on maps too large to
+     * play all of them in time, and fewer frames are painted.
+     */
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    public void setFrames(int frames) {
+        this.frames = frames;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setRender(boolean render) {
+        this.render = render;
+    }
+
+    /**
+     * Generates a map of about the given number of elements, plays a game on it and paints it.
+     * The standard output is silenced meanwhile, since the game reports every event on it.
+     */
+    public Row run(int size) {
+        Row row = new Row();
+        row.requestedSize = size;
+        List<MemoryPoolMXBean> heap = heapPools();
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            System.gc();
+            heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            long start = System.nanoTime();
+            Game game = new Game();
+            game.turnDuration = 0;
+            game.configurePlayers(List.of("Plumber 1", "Saboteur 1", "Plumber 2", "Saboteur 2"),
+                    List.of(true, false, true, false));
+            MapGenerator generator = new MapGenerator(seed);
+            generator.setSize(size);
+            generator.generate(game);
+            row.elements = game.elementList.size();
+            row.generateMillis = (System.nanoTime() - start) / 1_000_000;
+
+            Script script = new Script(game, seed);
+            long deadline = System.nanoTime() + maxMillis * 1_000_000;
+            for (int i = 0; i < warmupTurns && System.nanoTime() < deadline; i++) {
+                script.playTurn();
+            }
+            long[] latencies = new long[turns];
+            int played = 0;
+            start = System.nanoTime();
+            long now = start;
+            // play at least a few turns, even when warming up took all the time
+            while (played < turns && (now < deadline || played < 10)) {
+                script.playTurn();
+                long end = System.nanoTime();
+                latencies[played++] = end - now;
+                now = end;
+            }
+            row.turns = played;
+            row.turnsPerSecond = played / ((now - start) / 1e9);
+            Arrays.sort(latencies, 0, played);
+            row.p50Micros = percentile(latencies, played, 0.50) / 1e3;
+            row.p99Micros = percentile(latencies, played, 0.99) / 1e3;
+
+            if (render && frames > 0) {
+                renderFrames(game, row);
+            }
+            for (MemoryPoolMXBean pool : heap) {
+                row.heapPeakBytes += pool.getPeakUsage().getUsed();
+            }
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return row;
+    }
+
+    /**
+     * Paints frames of the given game and records how long a frame takes on average. At least one
+     * frame is painted, but no more are started once the time for the map has run out.
+     */
+    private void renderFrames(Game game, Row row) {
+        List<GameLog.Sink> sinks = GameLog.shared().getSinks();
+        MapGUI gui = new MapGUI(game); // redirects the standard output to its console, which run() restores
+        game.engine.removeListener(gui);
+        for (GameLog.Sink sink : GameLog.shared().getSinks()) {
+            if (!sinks.contains(sink)) {
+                GameLog.shared().removeSink(sink); // the console of the map, which would slow down later games
+            }
+        }
+        gui.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+        gui.doLayout();
+        BufferedImage image = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            gui.paint(g); // the first frame scales the images of any elements the preload has not reached yet
+            long start = System.nanoTime();
+            long deadline = start + maxMillis * 1_000_000;
+            long now = start;
+            int painted = 0;
+            while (painted < frames && (now < deadline || painted == 0)) {
+                gui.paint(g);
+                painted++;
+                now = System.nanoTime();
+            }
+            row.frames = painted;
+            row.renderMillis = (now - start) / 1e6 / painted;
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * Returns the given percentile of the first {@code count} values, which are sorted, by the nearest rank.
+     */
+    private static long percentile(long[] sorted, int count, double percentile) {
+        int rank = (int) Math.ceil(percentile * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Returns the header of the table the results are printed as.
+     */
+    public static String header() {
+        return String.format(Locale.ROOT, "%10s %10s %10s %8s %12s %10s %10s %10s %10s",
+                "size", "elements", "gen ms", "turns", "turns/s", "p50 us", "p99 us", "heap MB", "frame ms");
+    }
+
+    private static String format(Row r) {
+        return String.format(Locale.ROOT, "%10d %10d %10d %8d %12.1f %10.1f %10.1f %10.1f %10.2f",
+                r.requestedSize, r.elements, r.generateMillis, r.turns, r.turnsPerSecond, r.p50Micros,
+                r.p99Micros, r.heapPeakBytes / (1024.0 * 1024.0), r.renderMillis);
+    }
+
+    /**
+     * Writes the given results as CSV, one line per map size, with a header line.
+     */
+    public static void writeCsv(List<Row> rows, Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path)) {
+            out.write("size,elements,generate_ms,turns,turns_per_second,p50_us,p99_us,heap_peak_bytes,frames,frame_ms\n");
+            for (Row r : rows) {
+                out.write(String.format(Locale.ROOT, "%d,%d,%d,%d,%.3f,%.3f,%.3f,%d,%d,%s%n",
+                        r.requestedSize, r.elements, r.generateMillis, r.turns, r.turnsPerSecond, r.p50Micros,
+                        r.p99Micros, r.heapPeakBytes, r.frames,
+                        Double.isNaN(r.renderMillis) ? "" : String.format(Locale.ROOT, "%.3f", r.renderMillis)));
+            }
+        }
+    }
+
+    /**
+     * Plays the turns of the players of a game with a seeded random walk over the pipe system.
+     */
+    static final class Script {
+        private final Game game;
+        private final Random random;
+        private final List<Element> neighbours = new ArrayList<>();
+
+        Script(Game game, long seed) {
+            this.game = game;
+            this.random = new Random(seed);
+        }
+
+        /**
+         * Moves the current player, queues its action and plays the turn.
+         */
+        void playTurn() {
+            Player player = game.players[game.currentPlayerIndex];
+            char action;
+            synchronized (game) {
+                Element target = randomNeighbour(player.currentElement);
+                if (target != null) {
+                    player.move(game, target);
+                }
+                Element at = player.currentElement;
+                if (player instanceof Plumber) {
+                    action = at instanceof Pipe ? 'O' : at instanceof Pump ? 'F' : 'W';
+                } else {
+                    action = at instanceof Pipe ? 'P' : 'W';
+                }
+            }
+            game.queueAction(action);
+            game.engine.step();
+        }
+
+        private Element randomNeighbour(Element e) {
+            if (e == null) {
+                return null;
+            }
+            neighbours.clear();
+            if (e instanceof Pipe pipe) {
+                for (EndOfPipe end : pipe.endsOfPipe) {
+                    if (end != null && end.getConnectedElement() != null) {
+                        neighbours.add(end.getConnectedElement());
+                    }
+                }
+            } else {
+                neighbours.addAll(e.connectedPipes);
+            }
+            return neighbours.isEmpty() ? null : neighbours.get(random.nextInt(neighbours.size()));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package gui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * The static background of a component, rendered once into an image that is copied onto the component
+ * whenever it paints, instead of being drawn again piece by piece.
+ * <p>
+ * The image is a {@link VolatileImage}, which lives in video memory where there is one, so that copying
+ * it costs about as much as filling the component. It is rendered again when the component changes size
+ * or when the contents of the image are lost, e.g. when the display mode changes. Where no volatile image
+ * can be created, such as when painting off screen or in a headless environment, a compatible
+ * {@link BufferedImage} is used instead.
+ */
+public class BackgroundLayer {
+    /**
+     * Draws the background of a component of the given size.
+     */
+    public interface Painter {
+        void paint(Graphics2D g, int width, int height);
+    }
+
+    private final Component component;
+    private final Painter painter;
+    private VolatileImage volatileImage;
+    private BufferedImage bufferedImage;
+
+    /**
+     * Creates the background layer of the given component.
+     *
+     * @param component the component the background is drawn on
+     * @param painter   draws the background
+     */
+    public BackgroundLayer(Component component, Painter painter) {
+        this.component = component;
+        this.painter = painter;
+    }
+
+    /**
+     * Makes the background be rendered again the next time it is drawn, e.g. because what it shows has
+     * changed.
+     */
+    public void invalidate() {
+        if (volatileImage != null) {
+            volatileImage.flush();
+            volatileImage = null;
+        }
+        bufferedImage = null;
+    }
+
+    /**
+     * Copies the background onto the given graphics context, rendering it first if needed.
+     */
+    public void draw(Graphics g) {
+        int width = component.getWidth();
+        int height = component.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (drawVolatile(g, width, height)) {
+            return;
+        }
+        if (bufferedImage == null || bufferedImage.getWidth() != width || bufferedImage.getHeight() != height) {
+            GraphicsConfiguration gc = component.getGraphicsConfiguration();
+            bufferedImage = gc != null ? gc.createCompatibleImage(width, height)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            render(bufferedImage.createGraphics(), width, height);
+        }
+        g.drawImage(bufferedImage, 0, 0, null);
+    }
+
+    /**
+     * Draws the background from the volatile image, rendering it again for as long as its contents are
+     * lost while it is being drawn.
+     *
+     * @return whether a volatile image could be used
+     */
+    private boolean drawVolatile(Graphics g, int width, int height) {
+        do {
+            if (volatileImage == null || volatileImage.getWidth() != width || volatileImage.getHeight() != height) {
+                invalidate();
+                volatileImage = component.createVolatileImage(width, height);
+                if (volatileImage == null) {
+                    return false; // the component is not displayable, or there is no screen
+                }
+                render(volatileImage.createGraphics(), width, height);
+            }
+            int status = volatileImage.validate(component.getGraphicsConfiguration());
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                // the component moved to another screen; create the image anew for that one
+                invalidate();
+                continue;
+            }
+            if (status == VolatileImage.IMAGE_RESTORED) {
+                render(volatileImage.createGraphics(), width, height);
+            }
+            g.drawImage(volatileImage, 0, 0, null);
+        } while (volatileImage == null || volatileImage.contentsLost());
+        return true;
+    }
+
+    private void render(Graphics2D g, int width, int height) {
+        try {
+            painter.paint(g, width, height);
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -1,37 +1,36 @@
 package gui;
 
-import javax.swing.*;
-import java.awt.*;
 import model.Cistern;
 
 /**
- * The CisternGUI class represents a graphical user interface for displaying a cistern.
- * It handles loading and scaling the cistern image and drawing it on a given graphics context.
+ * The CisternGUI class is the node of a cistern in the {@link Scene} of the map.
+ * It is drawn with the cistern image from the {@link SpriteCache}.
  */
-public class CisternGUI {
-    private Cistern cistern;
-    public ImageIcon cisternImg;
+public class CisternGUI extends SceneNode {
+    private final Cistern cistern;
 
     /**
-     * Constructs a CisternGUI with the specified Cistern.
-     * Loads and scales the cistern image to match the cistern's dimensions.
+     * Constructs a CisternGUI with the specified Cistern model.
      *
      * @param cistern the Cistern object representing the cistern model
      */
-    public CisternGUI(Cistern cistern){
+    public CisternGUI(Cistern cistern) {
+        super(Scene.Layer.CISTERNS);
         this.cistern = cistern;
-        Image originalImage = new ImageIcon("src\\gui\\images\\Cistern.png").getImage();
-        Image scaledImage = originalImage.getScaledInstance(cistern.width, cistern.height, Image.SCALE_SMOOTH); // Change the width and height to your desired size
-        this.cisternImg = new ImageIcon(scaledImage);
+        update();
+    }
+
+    @Override
+    public Cistern getModel() {
+        return cistern;
     }
 
     /**
-     * Draws the cistern image at the cistern's position on the given graphics context.
-     *
-     * @param g the Graphics context on which to draw the cistern image
+     * Takes the cistern's position and size from the cistern.
      */
-    public void draw(Graphics g){
-        Point pos = cistern.getPosition();
-        g.drawImage(cisternImg.getImage(), pos.x, pos.y, null);
+    @Override
+    public void update() {
+        set(cistern.getPosition(), cistern.width, cistern.height,
+                SpriteCache.get(SpriteCache.Asset.CISTERN, cistern.width, cistern.height), true);
     }
 }
@@ -0,0 +1,88 @@
+package gui;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+/**
+ * Appends text to a console text area from any thread. Text is collected in a buffer, and at most one
+ * task is waiting on the event dispatch thread at a time to move everything collected so far into the
+ * text area in one go, so that a burst of output costs a single update of the text area rather than one
+ * per line or character. The text area keeps only the last lines, so that a long game does not make its
+ * document grow without bound.
+ */
+public class ConsoleAppender {
+    /**
+     * The number of characters collected before the oldest ones are dropped, should the event dispatch
+     * thread not keep up.
+     */
+    private static final int MAX_PENDING = 1 << 18;
+
+    private final JTextArea textArea;
+    private final int maxLines;
+    private final StringBuilder pending = new StringBuilder();
+    private boolean scheduled = false;
+
+    /**
+     * Creates an appender for the given text area.
+     *
+     * @param textArea the text area to append to
+     * @param maxLines the number of lines the text area keeps
+     */
+    public ConsoleAppender(JTextArea textArea, int maxLines) {
+        this.textArea = textArea;
+        this.maxLines = maxLines;
+    }
+
+    /**
+     * Adds text to be shown in the text area.
+     */
+    public void append(String text) {
+        synchronized (pending) {
+            pending.append(text);
+            if (pending.length() > MAX_PENDING) {
+                // keep whole lines from the end, which are what the text area would show anyway
+                int cut = pending.indexOf("\n", pending.length() - MAX_PENDING / 2);
+                pending.delete(0, cut < 0 ? pending.length() - MAX_PENDING / 2 : cut + 1);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                SwingUtilities.invokeLater(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Moves the collected text into the text area, on the event dispatch thread.
+     */
+    private void flush() {
+        String text;
+        synchronized (pending) {
+            text = pending.toString();
+            pending.setLength(0);
+            scheduled = false;
+        }
+        textArea.append(text);
+        trim();
+        // Make sure the last part of the text is always shown
+        textArea.setCaretPosition(textArea.getDocument().getLength());
+    }
+
+    /**
+     * Removes the oldest lines of the text area beyond the number it keeps.
+     */
+    private void trim() {
+        Document document = textArea.getDocument();
+        Element root = document.getDefaultRootElement();
+        // the last line is the empty one after the final line break
+        int excess = root.getElementCount() - 1 - maxLines;
+        if (excess > 0) {
+            try {
+                document.remove(0, root.getElement(excess - 1).getEndOffset());
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -2,42 +2,36 @@ package gui;
 
 import model.EndOfPipe;
 
-import javax.swing.*;
-import java.awt.*;
-
 /**
- * The EndOfPipeGUI class represents the graphical user interface for displaying the end of a pipe.
- * It handles loading the appropriate image based on the pipe's orientation and drawing it on a given graphics context.
+ * The EndOfPipeGUI class is the node of the end of a pipe in the {@link Scene} of the map.
+ * It is drawn with the image from the {@link SpriteCache} that matches the pipe's orientation, unless it is not visible.
  */
-public class EndOfPipeGUI {
-    private EndOfPipe endOfPipe;
-    public ImageIcon endOfPipeImg;
+public class EndOfPipeGUI extends SceneNode {
+    private final EndOfPipe endOfPipe;
 
     /**
-     * Constructs an EndOfPipeGUI with the specified EndOfPipe model.
-     * Loads the appropriate image based on the pipe's orientation.
+     * Constructs a EndOfPipeGUI with the specified EndOfPipe model.
      *
      * @param endOfPipe the EndOfPipe object representing the model of the end of the pipe
      */
     public EndOfPipeGUI(EndOfPipe endOfPipe) {
+        super(Scene.Layer.ENDS_OF_PIPES);
         this.endOfPipe = endOfPipe;
-        Image originalImage;
-        if (!endOfPipe.currentPipe.vertical) {
-            originalImage = new ImageIcon("src\\gui\\images\\endOfPipeImg.png").getImage();
-        } else {
-            originalImage = new ImageIcon("src\\gui\\images\\endOfPipeImg_vertical.png").getImage();
-        }
-        Image scaledImage = originalImage.getScaledInstance(endOfPipe.width, endOfPipe.height, Image.SCALE_SMOOTH);
-        this.endOfPipeImg = new ImageIcon(scaledImage);
+        update();
+    }
+
+    @Override
+    public EndOfPipe getModel() {
+        return endOfPipe;
     }
 
     /**
-     * Draws the end of the pipe image at the end of pipe's position on the given graphics context.
-     *
-     * @param g the Graphics context on which to draw the end of pipe image
+     * Takes the position, size and visibility of the end of the pipe, and the orientation of its pipe.
      */
-    public void draw(Graphics g) {
-        Point pos = endOfPipe.getPosition();
-        g.drawImage(endOfPipeImg.getImage(), pos.x, pos.y, null);
+    @Override
+    public void update() {
+        boolean vertical = endOfPipe.currentPipe != null && endOfPipe.currentPipe.vertical;
+        set(endOfPipe.getPosition(), endOfPipe.width, endOfPipe.height,
+                SpriteCache.get(SpriteCache.Asset.endOfPipe(vertical), endOfPipe.width, endOfPipe.height), endOfPipe.isVisible());
     }
 }
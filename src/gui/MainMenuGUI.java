@@ -1,6 +1,8 @@
 package gui;
 
 import model.Game;
+import model.GameEvent;
+import model.GameLog;
 
 import javax.swing.*;
 import java.awt.*;
@@ -23,11 +25,17 @@ public class MainMenuGUI extends JFrame {
         setExtendedState(getExtendedState() | JFrame.MAXIMIZED_BOTH);
 
         JPanel background = new JPanel() {
+            // the desert is scaled to the size of the window once, and again only when it is resized
+            private final BackgroundLayer layer = new BackgroundLayer(this, (g, width, height) -> {
+                g.setColor(getBackground());
+                g.fillRect(0, 0, width, height);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(SpriteCache.getOriginal(SpriteCache.Asset.MENU_BACKGROUND), 0, 0, width, height, null);
+            });
+
             @Override
             protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                ImageIcon bgIcon = new ImageIcon("src\\gui\\images\\desert.jpg");
-                g.drawImage(bgIcon.getImage(), 0, 0, getWidth(), getHeight(), this);
+                layer.draw(g);
             }
         };
         background.setLayout(new FlowLayout(FlowLayout.CENTER, 150, 100));
@@ -73,7 +81,7 @@ public class MainMenuGUI extends JFrame {
      * @param e the ActionEvent triggered by the button
      */
     private void onProceed(ActionEvent e) {
-        System.out.println("Proceed to game setup");
+        GameLog.log(GameEvent.Kind.GAME, "Proceed to game setup");
         Game game = new Game(); // Assuming Game class has a no-argument constructor
         new ConfigurationGUI(game); // Start with default 4 players, change as necessary
     }
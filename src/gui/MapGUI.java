@@ -12,43 +12,67 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The MapGUI class represents the graphical user interface for the game map.
  * It handles the rendering of game elements, players, and provides interaction mechanisms such as key and mouse listeners.
+ * <p>
+ * The map keeps a {@link Scene} with a node for every element, end of pipe and player, which is changed
+ * as the game reports its changes rather than built again for every frame. Only the parts of the map
+ * that change are drawn again: the elements report their changes through the engine, and the map
+ * repaints the nodes whose sprite or bounds changed. The score board, the timer, the players and the
+ * selection are compared with what was last drawn whenever something may have changed them, and at
+ * least once a second for the timer, and are repainted only if they differ.
  */
-public class MapGUI extends JPanel implements KeyListener {
-
-    public boolean isChangingInputPipe = false;
-    public boolean isChangingOutputPipe = false;
-    public Pump selectedPump = null;
-    public static Element selectedElement;
-    public static EndOfPipe selectedEndOfPipe;
+public class MapGUI extends JPanel implements KeyListener, GameListener {
 
+    private javax.swing.Timer refreshTimer;
+    public Image tileImage = SpriteCache.get(SpriteCache.Asset.MAP_TILES, 50, 50);
     /**
-     * Gets the currently selected element on the map.
-     *
-     * @return the currently selected Element
+     * The background of the map, rendered once and copied onto the map whenever it is painted.
      */
-    public static Element getSelectedElement() {
-        return selectedElement;
-    }
-
+    private final BackgroundLayer background = new BackgroundLayer(this, this::paintBackground);
     /**
-     * Gets the currently selected end of pipe on the map.
-     *
-     * @return the currently selected EndOfPipe
+     * The tile image the background was last rendered with.
      */
-    public static EndOfPipe getSelectedEndOfPipe() {
-        return selectedEndOfPipe;
-    }
-
-    private javax.swing.Timer refreshTimer;
-    public Image tileImage = new ImageIcon("src\\gui\\images\\MapTiles2.png").getImage().getScaledInstance(50, 50, Image.SCALE_SMOOTH);
+    private Image backgroundTile;
     private Game game;
+    /**
+     * The nodes the map is drawn from.
+     */
+    private final Scene scene = new Scene();
     private JPanel keyMappingPanel;
-    public static boolean isMoveActive = false;
     private JTextArea console;
+    /**
+     * The number of lines the console keeps.
+     */
+    private static final int CONSOLE_LINES = 1000;
+    /**
+     * The thickness of the border drawn around the selected element or end of pipe.
+     */
+    private static final int HIGHLIGHT_BORDER = 5;
+    /**
+     * How far the ends of the pipes connected to an element reach beyond its bounds.
+     */
+    private static final int END_OF_PIPE_MARGIN = 15;
+    /**
+     * The height of the score board and player information above the desert.
+     */
+    private static final int HUD_HEIGHT = 100;
+    /**
+     * The distance of the timer from the right edge of the map.
+     */
+    private static final int TIMER_OFFSET = 135;
+    /**
+     * Whether a {@link #refresh()} is waiting to run on the event dispatch thread.
+     */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private String shownScores;
+    private String shownPlayerInfo;
+    private String shownTime;
+    private Rectangle shownSelection;
     JPanel southPanel = new JPanel();
 
     /**
@@ -58,7 +82,9 @@ public class MapGUI extends JPanel implements KeyListener {
      */
     public MapGUI(Game game) {
         this.game = game;
-        game.mapGUI = this;
+        SpriteCache.preload(game);
+        buildScene();
+        game.engine.addListener(this);
         setupRefreshTimer();
         setupKeyMappingPanel();
         setupConsole();
@@ -82,63 +108,72 @@ public class MapGUI extends JPanel implements KeyListener {
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (isMoveActive) { // Check if move action is active
-                    Player currentPlayer = game.players[game.currentPlayerIndex];
-                    if (currentPlayer != null) {
-                        selectObjectAt(e.getX(), e.getY());
-                        currentPlayer.move(game, selectedElement);
-                    }
-                    isMoveActive = false; // Reset the move action state
-                }
-                else if(isChangingInputPipe || isChangingOutputPipe)
-                {
-                    boolean correctSelection = false;
-                    selectObjectAt(e.getX(), e.getY());
-                    for(Pipe p : selectedPump.connectedPipes)
-                    {
-                        if(selectedElement == p)
-                        {
-                            correctSelection = true;
+                synchronized (game) {
+                    if (game.isMoveActive) { // Check if move action is active
+                        Player currentPlayer = game.players[game.currentPlayerIndex];
+                        if (currentPlayer != null) {
+                            selectObjectAt(e.getX(), e.getY());
+                            currentPlayer.move(game, game.selectedElement);
                         }
+                        game.isMoveActive = false; // Reset the move action state
                     }
-                    if(correctSelection)
+                    else if(game.isChangingInputPipe || game.isChangingOutputPipe)
                     {
-                        if(isChangingInputPipe)
+                        Pump selectedPump = game.selectedPump;
+                        PlayerActionEvent event = PlayerActionEvent.start();
+                        boolean changingInputPipe = game.isChangingInputPipe;
+                        boolean correctSelection = false;
+                        selectObjectAt(e.getX(), e.getY());
+                        for(Pipe p : selectedPump.connectedPipes)
                         {
-                            Pipe selectedPipe = (Pipe) selectedElement;
-                            if(selectedPipe == selectedPump.outPipe)
+                            if(game.selectedElement == p)
                             {
-                                System.out.println("Input Pipe and Output Pipe cannot be the same.");
-                            }
-                            else {
-                                selectedPump.inPipe = (Pipe) selectedElement;
-                                System.out.println(selectedPump.getName() + " changed the input pipe to " + selectedElement.getName());
+                                correctSelection = true;
                             }
                         }
-                        else
+                        if(correctSelection)
                         {
-                            Pipe selectedPipe = (Pipe) selectedElement;
-                            if(selectedPipe == selectedPump.inPipe)
+                            if(game.isChangingInputPipe)
                             {
-                                System.out.println("Input Pipe and Output Pipe cannot be the same.");
+                                Pipe selectedPipe = (Pipe) game.selectedElement;
+                                if(selectedPipe == selectedPump.outPipe)
+                                {
+                                    GameLog.log(GameEvent.Kind.REJECTED, "Input Pipe and Output Pipe cannot be the same.");
+                                }
+                                else {
+                                    selectedPump.inPipe = (Pipe) game.selectedElement;
+                                    game.topologyChanged(selectedPump);
+                                    GameLog.log(GameEvent.Kind.ACTION, "{} changed the input pipe to {}", selectedPump.getName(), game.selectedElement.getName());
+                                }
                             }
-                            else {
-                                selectedPump.outPipe = (Pipe) selectedElement;
-                                System.out.println(selectedPump.getName() + " changed the input pipe to " + selectedElement.getName());
+                            else
+                            {
+                                Pipe selectedPipe = (Pipe) game.selectedElement;
+                                if(selectedPipe == selectedPump.inPipe)
+                                {
+                                    GameLog.log(GameEvent.Kind.REJECTED, "Input Pipe and Output Pipe cannot be the same.");
+                                }
+                                else {
+                                    selectedPump.outPipe = (Pipe) game.selectedElement;
+                                    game.topologyChanged(selectedPump);
+                                    GameLog.log(GameEvent.Kind.ACTION, "{} changed the input pipe to {}", selectedPump.getName(), game.selectedElement.getName());
+                                }
                             }
+                            game.isChangingInputPipe = false;
+                            game.isChangingOutputPipe = false;
+                            event.finish(game.players[game.currentPlayerIndex],
+                                    changingInputPipe ? "changeInputPipe" : "changeOutputPipe", selectedPump, game.selectedElement);
+                        }
+                        else
+                        {
+                            GameLog.log(GameEvent.Kind.REJECTED, "Invalid input. Select a pipe that is connected to the Pump");
                         }
-                        isChangingInputPipe = false;
-                        isChangingOutputPipe = false;
                     }
-                    else
-                    {
-                        System.out.println("Invalid input. Select a pipe that is connected to the Pump");
+                    else {
+                        selectObjectAt(e.getX(), e.getY());
                     }
                 }
-                else {
-                    selectObjectAt(e.getX(), e.getY());
-                }
-                repaint();
+                refresh();
             }
         });
     }
@@ -157,53 +192,247 @@ public class MapGUI extends JPanel implements KeyListener {
         scrollPane.setPreferredSize(new Dimension(800, 100));
         scrollPane.setMaximumSize(new Dimension(800, 100)); // Control the maximum size
 
-        PrintStream printStream = new PrintStream(new CustomOutputStream(console));
+        ConsoleAppender appender = new ConsoleAppender(console, CONSOLE_LINES);
+        PrintStream printStream = new PrintStream(new CustomOutputStream(appender));
         System.setOut(printStream);
         System.setErr(printStream);
+        // the events of the game are shown directly rather than through the redirected output,
+        // and only in the console of the latest map
+        GameLog log = GameLog.shared();
+        for (GameLog.Sink sink : log.getSinks()) {
+            if (sink == GameLog.STANDARD_OUTPUT || sink instanceof ConsoleLogSink) {
+                log.removeSink(sink);
+            }
+        }
+        log.addSink(new ConsoleLogSink(appender));
 
         southPanel.add(scrollPane);
     }
 
     /**
-     * Sets up the refresh timer to periodically repaint the component.
+     * Sets up the refresh timer to check every second whether the timer, or anything else that does not
+     * report its changes, needs to be drawn again.
      */
     private void setupRefreshTimer() {
-        refreshTimer = new javax.swing.Timer(1000, e -> repaint()); // Refresh every second
+        refreshTimer = new javax.swing.Timer(1000, e -> refresh());
         refreshTimer.start();
     }
 
+    /**
+     * Runs {@link #refresh()} on the event dispatch thread, unless it is already waiting to run.
+     * May be called from any thread, as often as needed.
+     */
+    private void scheduleRefresh() {
+        if (!refreshScheduled.get() && refreshScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::refresh);
+        }
+    }
+
+    /**
+     * Repaints the parts of the score board, the players and the selection that differ from what was
+     * last drawn.
+     */
+    private void refresh() {
+        refreshScheduled.set(false);
+        String scores;
+        String playerInfo;
+        String time;
+        Rectangle selection;
+        synchronized (game) {
+            scores = game.calculateCollectedWater() + ":" + game.calculateLeakedWater();
+            playerInfo = game.players != null ? playerInfo() : null;
+            time = game.timer != null ? game.timer.getCurrentTimeFormatted() : null;
+            selection = selectionBounds();
+            // players do not report their moves; their nodes are compared with them instead
+            if (game.players != null) {
+                for (Player player : game.players) {
+                    repaintBounds(scene.update(player));
+                }
+            }
+        }
+        int width = getWidth();
+        int timerX = width - TIMER_OFFSET;
+        if (!scores.equals(shownScores)) {
+            repaint(0, 0, timerX, HUD_HEIGHT);
+            shownScores = scores;
+        }
+        if (!Objects.equals(time, shownTime)) {
+            repaint(timerX, 0, TIMER_OFFSET, HUD_HEIGHT);
+            shownTime = time;
+        }
+        if (!Objects.equals(playerInfo, shownPlayerInfo)) {
+            repaint(0, HUD_HEIGHT / 2, width, HUD_HEIGHT / 2);
+            shownPlayerInfo = playerInfo;
+        }
+        if (!Objects.equals(selection, shownSelection)) {
+            repaintBounds(shownSelection);
+            repaintBounds(selection);
+            shownSelection = selection;
+        }
+    }
+
+    private void repaintBounds(Rectangle bounds) {
+        if (bounds != null) {
+            repaint(bounds.x, bounds.y, bounds.width, bounds.height);
+        }
+    }
+
+    /**
+     * Creates the nodes of all elements, ends of pipes and players of the game, replacing the scene.
+     */
+    private void buildScene() {
+        synchronized (game) {
+            scene.clear();
+            if (game.pipeList != null) {
+                for (Pipe pipe : game.pipeList) {
+                    scene.add(new PipeGUI(pipe));
+                }
+                for (Pump pump : game.pumpList) {
+                    scene.add(new PumpGUI(pump));
+                }
+                for (Cistern cistern : game.cisternList) {
+                    scene.add(new CisternGUI(cistern));
+                }
+                for (Spring spring : game.springList) {
+                    scene.add(new SpringGUI(spring));
+                }
+            }
+            for (EndOfPipe endOfPipe : game.endOfPipeList) {
+                scene.add(new EndOfPipeGUI(endOfPipe));
+            }
+            if (game.players != null) {
+                for (Saboteur saboteur : game.saboteurs) {
+                    scene.add(new SaboteurGUI(saboteur));
+                }
+                for (Plumber plumber : game.plumbers) {
+                    scene.add(new PlumberGUI(plumber));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a new node for the given element.
+     */
+    private static SceneNode createNode(Element e) {
+        if (e instanceof Pipe pipe) {
+            return new PipeGUI(pipe);
+        } else if (e instanceof Pump pump) {
+            return new PumpGUI(pump);
+        } else if (e instanceof Cistern cistern) {
+            return new CisternGUI(cistern);
+        } else if (e instanceof Spring spring) {
+            return new SpringGUI(spring);
+        }
+        throw new IllegalArgumentException("No node for " + e.getName());
+    }
+
+    /**
+     * Adds a node for the given element if it was added to the map, removes its node if it was removed,
+     * and updates it otherwise.
+     *
+     * @return the area that has to be drawn again
+     */
+    private Rectangle syncNode(Element e) {
+        boolean onMap = game.elementList.contains(e);
+        SceneNode node = scene.get(e);
+        if (onMap && node == null) {
+            node = createNode(e);
+            scene.add(node);
+            return node.getBounds();
+        } else if (!onMap) {
+            return scene.remove(e);
+        }
+        Rectangle area = scene.update(e);
+        return area != null ? area : node.getBounds();
+    }
+
+    /**
+     * Returns the bounds of the selected element or end of pipe together with its highlight, or null if
+     * nothing is selected.
+     */
+    private Rectangle selectionBounds() {
+        Rectangle bounds = null;
+        if (game.selectedElement != null) {
+            bounds = bounds(game.selectedElement);
+        } else if (game.selectedEndOfPipe != null) {
+            EndOfPipe end = game.selectedEndOfPipe;
+            bounds = new Rectangle(end.getPosition().x, end.getPosition().y, end.width + 1, end.height + 1);
+        }
+        if (bounds != null) {
+            bounds.grow(HIGHLIGHT_BORDER, HIGHLIGHT_BORDER);
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the area an element is drawn in.
+     */
+    private static Rectangle bounds(Element e) {
+        Point pos = e.getPosition();
+        return new Rectangle(pos.x, pos.y, e.width + 1, e.height + 1);
+    }
+
+    /**
+     * Draws the parts of the map that do not change during a game: the background color and the desert
+     * tiles below the score board.
+     */
+    private void paintBackground(Graphics2D g, int width, int height) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, width, height);
+        int iw = backgroundTile != null ? backgroundTile.getWidth(this) : -1;
+        int ih = backgroundTile != null ? backgroundTile.getHeight(this) : -1;
+        if (iw > 0 && ih > 0) {
+            for (int x = 0; x < width; x += iw) {
+                for (int y = HUD_HEIGHT; y < height; y += ih) {
+                    g.drawImage(backgroundTile, x, y, iw, ih, this);
+                }
+            }
+        }
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        int iw = tileImage.getWidth(this);
-        int ih = tileImage.getHeight(this);
-        if (iw > 0 && ih > 0) { // Make sure the image has loaded correctly
-            for (int x = 0; x < getWidth(); x += iw) {
-                for (int y = 100; y < getHeight(); y += ih) {
-                    g.drawImage(tileImage, x, y, iw, ih, this);
-                }
+        long start = System.nanoTime();
+        RepaintEvent event = new RepaintEvent();
+        event.begin();
+        if (tileImage != backgroundTile) {
+            backgroundTile = tileImage;
+            background.invalidate();
+        }
+        background.draw(g);
+        if (tileImage != null && tileImage.getWidth(this) > 0) { // Make sure the image has loaded correctly
+            synchronized (game) {
+                scene.paint(g); // the elements, ends of pipes and players in the area being painted
+                drawPlayerInfo(g);
             }
-            drawElements(g);
-            drawPlayers(g);
-            drawPlayerInfo(g);
             drawTimer(g);
             drawScores(g);
         }
+        Element selectedElement = game.selectedElement;
         if (selectedElement != null) {
             g.setColor(Color.RED); // Set highlight color
             Point pos = selectedElement.getPosition();
-            for (int i = 0; i < 5; i++) { // Change '5' to the desired border thickness
+            for (int i = 0; i < HIGHLIGHT_BORDER; i++) {
                 g.drawRect(pos.x - i, pos.y - i, selectedElement.width + 2 * i, selectedElement.height + 2 * i);
             }
         }
+        EndOfPipe selectedEndOfPipe = game.selectedEndOfPipe;
         if (selectedEndOfPipe != null) {
             g.setColor(Color.RED); // Set highlight color
             Point pos = selectedEndOfPipe.getPosition();
-            for (int i = 0; i < 5; i++) { // Change '5' to the desired border thickness
+            for (int i = 0; i < HIGHLIGHT_BORDER; i++) {
                 g.drawRect(pos.x - i, pos.y - i, selectedEndOfPipe.width + 2 * i, selectedEndOfPipe.height + 2 * i);
             }
         }
         g.setColor(Color.BLACK); // Reset color for other drawing
+        game.engine.getMetrics().repaint.recordSince(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.elements = game.elementList.size();
+            event.selectedElement = selectedElement != null ? selectedElement.getName() : null;
+            event.commit();
+        }
     }
 
     /**
@@ -216,7 +445,7 @@ public class MapGUI extends JPanel implements KeyListener {
             String time = game.timer.getCurrentTimeFormatted();
             g.setColor(Color.RED);
             g.setFont(new Font("SansSerif", Font.BOLD, 50));
-            int x = getWidth() - 135; // Position from the right edge
+            int x = getWidth() - TIMER_OFFSET; // Position from the right edge
             int y = 55; // Margin from the top
             g.drawString(time, x, y);
         }
@@ -247,19 +476,16 @@ public class MapGUI extends JPanel implements KeyListener {
      * @param y the y-coordinate of the mouse click
      */
     private void selectObjectAt(int x, int y) {
-        for (EndOfPipe eop : game.endOfPipeList) {
-            if (eop.contains(x, y)) {
-                selectedEndOfPipe = eop;
-                selectedElement = null;
-                return;
-            }
+        EndOfPipe eop = game.endOfPipeAt(x, y);
+        if (eop != null) {
+            game.selectedEndOfPipe = eop;
+            game.selectedElement = null;
+            return;
         }
-        for (Element e : game.elementList) {
-            if (e.contains(x, y)) {
-                selectedElement = e;
-                selectedEndOfPipe = null;
-                return;
-            }
+        Element e = game.elementAt(x, y);
+        if (e != null) {
+            game.selectedElement = e;
+            game.selectedEndOfPipe = null;
         }
     }
 
@@ -288,52 +514,25 @@ public class MapGUI extends JPanel implements KeyListener {
     }
 
     /**
-     * Draws the game elements (pipes, pumps, cisterns, springs, end of pipes) on the panel.
+     * Draws the information of the current player on the panel.
      *
      * @param g the Graphics context to draw on
      */
-    private void drawElements(Graphics g) {
-        for (Pipe pipe : game.pipeList) {
-            new PipeGUI(pipe).draw(g);
-        }
-        for (Pump pump : game.pumpList) {
-            if (pump.isVisible()) { // Check the visibility flag
-                new PumpGUI(pump).draw(g);
-            }
-        }
-        for (Cistern cistern : game.cisternList) {
-            new CisternGUI(cistern).draw(g);
-        }
-        for (Spring spring : game.springList) {
-            new SpringGUI(spring).draw(g);
-        }
-        for (EndOfPipe endOfPipe : game.endOfPipeList) {
-            if (endOfPipe.isVisible()) { // Check the visibility flag
-                new EndOfPipeGUI(endOfPipe).draw(g);
-            }
-        }
-    }
+    private void drawPlayerInfo(Graphics g) {
+        String playerInfo = playerInfo();
 
-    /**
-     * Draws the players (saboteurs and plumbers) on the panel.
-     *
-     * @param g the Graphics context to draw on
-     */
-    private void drawPlayers(Graphics g) {
-        for (Saboteur saboteur : game.saboteurs) {
-            new SaboteurGUI(saboteur).draw(g);
-        }
-        for (Plumber plumber : game.plumbers) {
-            new PlumberGUI(plumber).draw(g);
-        }
+        g.setColor(Color.RED);
+        g.setFont(new Font("SansSerif", Font.BOLD, 25));
+        int x = 10; // Margin from the left edge
+        int y = 90; // Margin from the top
+
+        g.drawString(playerInfo, x, y);
     }
 
     /**
-     * Draws the information of the current player on the panel.
-     *
-     * @param g the Graphics context to draw on
+     * Returns the information of the current player shown on the panel.
      */
-    private void drawPlayerInfo(Graphics g) {
+    private String playerInfo() {
         Player currentPlayer = game.players[game.currentPlayerIndex];
         String team = Arrays.asList(game.saboteurs).contains(currentPlayer) ? "Saboteurs" : "Plumbers";
         String pickedUpPump = "No";
@@ -345,35 +544,117 @@ public class MapGUI extends JPanel implements KeyListener {
             pickedUpEndOfPipe = plumber.pickedUpEoP != null ? "Yes" : "No";
         }
 
-        String playerInfo = String.format("Player: %s's turn | Team: %s | Has a picked up pump: %s | Has a picked up end of pipe: %s",
+        return String.format("Player: %s's turn | Team: %s | Has a picked up pump: %s | Has a picked up end of pipe: %s",
                 currentPlayer.playerName, team, pickedUpPump, pickedUpEndOfPipe);
+    }
 
-        g.setColor(Color.RED);
-        g.setFont(new Font("SansSerif", Font.BOLD, 25));
-        int x = 10; // Margin from the left edge
-        int y = 90; // Margin from the top
+    /**
+     * Shows the events of the game log in the console, one per line.
+     */
+    static class ConsoleLogSink implements GameLog.Sink {
+        private final ConsoleAppender appender;
 
-        g.drawString(playerInfo, x, y);
+        ConsoleLogSink(ConsoleAppender appender) {
+            this.appender = appender;
+        }
+
+        @Override
+        public void accept(GameEvent event) {
+            appender.append(event.text() + "\n");
+        }
     }
 
     /**
-     * Custom output stream to redirect system output to the console.
+     * Custom output stream to redirect system output to the console. Bytes are collected until a line
+     * is complete or the stream is flushed, and then decoded and appended as a whole.
      */
     static class CustomOutputStream extends java.io.OutputStream {
-        private JTextArea textArea;
+        private final ConsoleAppender appender;
+        private byte[] line = new byte[256];
+        private int length = 0;
+
+        public CustomOutputStream(ConsoleAppender appender) {
+            this.appender = appender;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (length == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[length++] = (byte) b;
+            if (b == '\n') {
+                flush();
+            }
+        }
 
-        public CustomOutputStream(JTextArea textArea) {
-            this.textArea = textArea;
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
         }
 
         @Override
-        public void write(int b) {
-            SwingUtilities.invokeLater(() -> {
-                textArea.append(String.valueOf((char) b));
-                // Make sure the last part of the text is always shown
-                textArea.setCaretPosition(textArea.getDocument().getLength());
-            });
+        public synchronized void flush() {
+            if (length > 0) {
+                appender.append(new String(line, 0, length, java.nio.charset.Charset.defaultCharset()));
+                length = 0;
+            }
+        }
+    }
+
+    @Override
+    public void gameChanged() {
+        scheduleRefresh();
+    }
+
+    @Override
+    public void elementChanged(Element element, ElementChange change) {
+        if (element == null) {
+            buildScene();
+            repaint();
+            return;
         }
+        switch (change) {
+            case WATER_LEVEL:
+                // the water is not drawn, but it counts towards the scores
+                scheduleRefresh();
+                break;
+            case CONNECTIONS:
+                Rectangle area = syncNode(element);
+                if (area != null) {
+                    area.grow(END_OF_PIPE_MARGIN, END_OF_PIPE_MARGIN);
+                    repaintBounds(area);
+                }
+                break;
+            case OCCUPANCY:
+                // a player stepped onto or off the element, which is drawn the same either way
+                scheduleRefresh();
+                break;
+            default:
+                repaintBounds(scene.update(element));
+                break;
+        }
+    }
+
+    @Override
+    public void endOfPipeChanged(EndOfPipe end) {
+        if (game.endOfPipeList.contains(end)) {
+            EndOfPipeGUI node = new EndOfPipeGUI(end);
+            scene.add(node);
+            repaintBounds(node.getBounds());
+        } else {
+            repaintBounds(scene.remove(end));
+        }
+    }
+
+    @Override
+    public void gameEnded(int waterCollected, int waterLeaked) {
+        SwingUtilities.invokeLater(() -> {
+            EndGameGUI endGameGUI = new EndGameGUI(waterCollected, waterLeaked);
+            endGameGUI.setVisible(true);
+        });
     }
 
     @Override
@@ -381,7 +662,7 @@ public class MapGUI extends JPanel implements KeyListener {
 
     @Override
     public void keyPressed(KeyEvent e) {
-        game.setCurrentAction(e.getKeyChar());
+        game.queueAction(e.getKeyChar());
     }
 
     @Override
@@ -2,38 +2,38 @@ package gui;
 
 import model.Plumber;
 
-import javax.swing.*;
-import java.awt.*;
-
 /**
- * The PlumberGUI class represents the graphical user interface for displaying a plumber.
- * It handles loading and scaling the plumber image and drawing it on a given graphics context.
+ * The PlumberGUI class is the node of a plumber in the {@link Scene} of the map.
+ * It is drawn with the plumber image from the {@link SpriteCache}.
  */
-public class PlumberGUI {
-    private Plumber plumber;
-    public ImageIcon plumberImg;
+public class PlumberGUI extends SceneNode {
+    /**
+     * The size the plumbers are drawn at.
+     */
+    public static final int SIZE = 100;
+    private final Plumber plumber;
 
     /**
      * Constructs a PlumberGUI with the specified Plumber model.
-     * Loads and scales the plumber image.
      *
      * @param plumber the Plumber object representing the model of the plumber
      */
     public PlumberGUI(Plumber plumber) {
+        super(Scene.Layer.PLUMBERS);
         this.plumber = plumber;
-        Image originalImage = new ImageIcon("src\\gui\\images\\Plumber.png").getImage();
-        Image scaledImage = originalImage.getScaledInstance(100, 100, Image.SCALE_SMOOTH); // Change the width and height to your desired size
-        this.plumberImg = new ImageIcon(scaledImage);
+        update();
+    }
+
+    @Override
+    public Plumber getModel() {
+        return plumber;
     }
 
     /**
-     * Draws the plumber image at the plumber's position on the given graphics context.
-     *
-     * @param g the Graphics context on which to draw the plumber image
+     * Takes the plumber's position from the plumber.
      */
-    public void draw(Graphics g) {
-        Point pos = plumber.getPosition();
-        g.drawImage(plumberImg.getImage(), pos.x, pos.y, null);
+    @Override
+    public void update() {
+        set(plumber.getPosition(), SIZE, SIZE, SpriteCache.get(SpriteCache.Asset.PLUMBER, SIZE, SIZE), true);
     }
 }
-
@@ -2,42 +2,35 @@ package gui;
 
 import model.Pump;
 
-import javax.swing.*;
-import java.awt.*;
-
 /**
- * The PumpGUI class represents the graphical user interface for displaying a pump.
- * It handles loading and scaling the pump image and drawing it on a given graphics context.
+ * The PumpGUI class is the node of a pump in the {@link Scene} of the map.
+ * It is drawn with the pump image from the {@link SpriteCache}, unless the pump is not visible.
  */
-public class PumpGUI {
-    private Pump pump;
-    public ImageIcon pumpImg;
+public class PumpGUI extends SceneNode {
+    private final Pump pump;
 
     /**
      * Constructs a PumpGUI with the specified Pump model.
-     * Loads and scales the pump image.
      *
      * @param pump the Pump object representing the model of the pump
      */
     public PumpGUI(Pump pump) {
+        super(Scene.Layer.PUMPS);
         this.pump = pump;
-        Image originalImage = new ImageIcon("src\\gui\\images\\Pump.png").getImage();
-        Image scaledImage = originalImage.getScaledInstance(pump.width, pump.height, Image.SCALE_SMOOTH);
-        this.pumpImg = new ImageIcon(scaledImage);
+        update();
+    }
+
+    @Override
+    public Pump getModel() {
+        return pump;
     }
 
     /**
-     * Draws the pump image at the pump's position on the given graphics context.
-     * If the pump is not visible, it will not be drawn.
-     *
-     * @param g the Graphics context on which to draw the pump image
+     * Takes the pump's position, size and visibility from the pump.
      */
-    public void draw(Graphics g) {
-        if (!pump.isVisible()) {
-            return; // Do not draw if the pump is not visible
-        }
-
-        Point pos = pump.getPosition();
-        g.drawImage(pumpImg.getImage(), pos.x, pos.y, null);
+    @Override
+    public void update() {
+        set(pump.getPosition(), pump.width, pump.height,
+                SpriteCache.get(SpriteCache.Asset.PUMP, pump.width, pump.height), pump.isVisible());
     }
 }
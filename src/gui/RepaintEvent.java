@@ -0,0 +1,25 @@
+package gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for a repaint of the map, recorded in the same category as the events of
+ * the game model.
+ */
+@Name("pipes.Repaint")
+@Label("Repaint")
+@Category({"Pipes in the Desert", "User Interface"})
+@Description("The map was painted")
+@StackTrace(false)
+final class RepaintEvent extends jdk.jfr.Event {
+    @Label("Elements")
+    @Description("The number of elements of the map")
+    int elements;
+
+    @Label("Selected Element")
+    String selectedElement;
+}
@@ -0,0 +1,212 @@
+package gui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The retained view of a map: one {@link SceneNode} for every element, end of pipe and player, kept
+ * from one paint to the next and changed only when the game object it shows changes.
+ * <p>
+ * Nodes are drawn layer by layer, and within a layer in the order they were added. They are also
+ * kept in a grid of square cells, so that painting a part of the map only visits the nodes in that
+ * part. This keeps a repaint of a changed element, or of the visible part of a map far larger than
+ * the window, independent of the size of the map.
+ * <p>
+ * All methods are synchronized, so nodes may be added and updated from any thread.
+ */
+public class Scene {
+    /**
+     * The layers of the map, in the order they are drawn.
+     */
+    public enum Layer {
+        PIPES, PUMPS, CISTERNS, SPRINGS, ENDS_OF_PIPES, SABOTEURS, PLUMBERS
+    }
+
+    /**
+     * The size of the cells of the grid, in pixels.
+     */
+    static final int CELL_SIZE = 128;
+
+    private static final Comparator<SceneNode> DRAW_ORDER =
+            Comparator.<SceneNode>comparingInt(n -> n.layer.ordinal()).thenComparingLong(n -> n.order);
+
+    private final Map<Object, SceneNode> nodes = new IdentityHashMap<>();
+    private final List<Set<SceneNode>> layers = new ArrayList<>();
+    private final Map<Long, List<SceneNode>> cells = new HashMap<>();
+    private long nextOrder = 0;
+    private int mark = 0;
+
+    public Scene() {
+        for (int i = 0; i < Layer.values().length; i++) {
+            layers.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Adds a node on top of the others of its layer, replacing the node of the same game object if there
+     * is one.
+     */
+    public synchronized void add(SceneNode node) {
+        SceneNode old = nodes.put(node.getModel(), node);
+        if (old != null) {
+            layers.get(old.layer.ordinal()).remove(old);
+            removeFromCells(old);
+        }
+        node.order = nextOrder++;
+        layers.get(node.layer.ordinal()).add(node);
+        addToCells(node);
+    }
+
+    /**
+     * Returns the node of the given game object, or null if it has none.
+     */
+    public synchronized SceneNode get(Object model) {
+        return nodes.get(model);
+    }
+
+    /**
+     * Removes the node of the given game object.
+     *
+     * @return the area the node was drawn in, or null if the object had no node
+     */
+    public synchronized Rectangle remove(Object model) {
+        SceneNode node = nodes.remove(model);
+        if (node == null) {
+            return null;
+        }
+        layers.get(node.layer.ordinal()).remove(node);
+        removeFromCells(node);
+        return node.getBounds();
+    }
+
+    /**
+     * Takes the node of the given game object from the object again.
+     *
+     * @return the area that has to be drawn again, which covers both where the node was and where it is
+     * now, or null if the node looks the same as before or the object has no node
+     */
+    public synchronized Rectangle update(Object model) {
+        SceneNode node = nodes.get(model);
+        if (node == null) {
+            return null;
+        }
+        Rectangle before = node.getBounds();
+        BufferedImage sprite = node.sprite;
+        boolean visible = node.visible;
+        node.update();
+        Rectangle after = node.getBounds();
+        if (!after.equals(before)) {
+            moveInCells(node, before);
+            return before.union(after);
+        }
+        return node.sprite != sprite || node.visible != visible ? after : null;
+    }
+
+    /**
+     * Removes all nodes.
+     */
+    public synchronized void clear() {
+        nodes.clear();
+        for (Set<SceneNode> layer : layers) {
+            layer.clear();
+        }
+        cells.clear();
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Draws the visible nodes in the clip of the given graphics context, in drawing order.
+     */
+    public synchronized void paint(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null || cellCount(clip) > cells.size()) {
+            // the clip covers most of the map; walking the layers is cheaper than the cells
+            for (Set<SceneNode> layer : layers) {
+                for (SceneNode node : layer) {
+                    if (clip == null || node.intersects(clip)) {
+                        node.draw(g);
+                    }
+                }
+            }
+            return;
+        }
+        List<SceneNode> inClip = new ArrayList<>();
+        int query = ++mark;
+        forEachCell(clip.x, clip.y, clip.width, clip.height, (cx, cy) -> {
+            List<SceneNode> cell = cells.get(key(cx, cy));
+            if (cell != null) {
+                for (SceneNode node : cell) {
+                    if (node.mark != query && node.visible && node.intersects(clip)) {
+                        node.mark = query;
+                        inClip.add(node);
+                    }
+                }
+            }
+        });
+        inClip.sort(DRAW_ORDER);
+        for (SceneNode node : inClip) {
+            node.draw(g);
+        }
+    }
+
+    private interface CellVisitor {
+        void visit(int cx, int cy);
+    }
+
+    private static void forEachCell(int x, int y, int width, int height, CellVisitor visitor) {
+        int fromX = Math.floorDiv(x, CELL_SIZE);
+        int fromY = Math.floorDiv(y, CELL_SIZE);
+        int toX = Math.floorDiv(x + Math.max(width, 1) - 1, CELL_SIZE);
+        int toY = Math.floorDiv(y + Math.max(height, 1) - 1, CELL_SIZE);
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                visitor.visit(cx, cy);
+            }
+        }
+    }
+
+    private static long cellCount(Rectangle r) {
+        long columns = Math.floorDiv(r.x + Math.max(r.width, 1) - 1, CELL_SIZE) - Math.floorDiv(r.x, CELL_SIZE) + 1L;
+        long rows = Math.floorDiv(r.y + Math.max(r.height, 1) - 1, CELL_SIZE) - Math.floorDiv(r.y, CELL_SIZE) + 1L;
+        return columns * rows;
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private void addToCells(SceneNode node) {
+        forEachCell(node.x, node.y, node.width, node.height,
+                (cx, cy) -> cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(node));
+    }
+
+    private void removeFromCells(SceneNode node) {
+        removeFromCells(node, node.getBounds());
+    }
+
+    private void removeFromCells(SceneNode node, Rectangle bounds) {
+        forEachCell(bounds.x, bounds.y, bounds.width, bounds.height, (cx, cy) -> {
+            Long key = key(cx, cy);
+            List<SceneNode> cell = cells.get(key);
+            if (cell != null && cell.remove(node) && cell.isEmpty()) {
+                cells.remove(key);
+            }
+        });
+    }
+
+    private void moveInCells(SceneNode node, Rectangle before) {
+        removeFromCells(node, before);
+        addToCells(node);
+    }
+}
@@ -0,0 +1,81 @@
+package gui;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A part of the map in the {@link Scene}: an element, an end of a pipe or a player. A node keeps the
+ * sprite it is drawn with and the bounds it is drawn in, so that drawing it only copies the sprite.
+ * They are taken from the game object again by {@link #update()} whenever the object changes.
+ */
+public abstract class SceneNode {
+    final Scene.Layer layer;
+    /**
+     * The position of the node within its layer, set by the scene when the node is added.
+     */
+    long order;
+    /**
+     * The last query of the scene that visited the node, so that a query visits every node once.
+     */
+    int mark;
+    int x;
+    int y;
+    int width;
+    int height;
+    BufferedImage sprite;
+    boolean visible;
+
+    protected SceneNode(Scene.Layer layer) {
+        this.layer = layer;
+    }
+
+    /**
+     * Returns the game object the node shows.
+     */
+    public abstract Object getModel();
+
+    /**
+     * Takes the sprite, bounds and visibility of the node from its game object again.
+     */
+    public abstract void update();
+
+    /**
+     * Sets what the node draws.
+     *
+     * @param position the top left corner of the sprite, or null if the node is not on the map
+     * @param width    the width of the sprite
+     * @param height   the height of the sprite
+     * @param sprite   the sprite, or null if its image could not be loaded
+     * @param visible  whether the node is drawn
+     */
+    protected void set(Point position, int width, int height, BufferedImage sprite, boolean visible) {
+        this.x = position != null ? position.x : 0;
+        this.y = position != null ? position.y : 0;
+        this.width = width;
+        this.height = height;
+        this.sprite = sprite;
+        this.visible = visible && position != null;
+    }
+
+    /**
+     * Returns the area the node is drawn in.
+     */
+    public Rectangle getBounds() {
+        return new Rectangle(x, y, width, height);
+    }
+
+    boolean intersects(Rectangle r) {
+        return x < r.x + r.width && x + width > r.x && y < r.y + r.height && y + height > r.y;
+    }
+
+    /**
+     * Draws the sprite of the node at its position on the given graphics context, if the node is visible.
+     *
+     * @param g the Graphics context on which to draw the sprite
+     */
+    public void draw(Graphics g) {
+        if (visible && sprite != null) {
+            g.drawImage(sprite, x, y, null);
+        }
+    }
+}
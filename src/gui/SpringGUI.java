@@ -2,37 +2,35 @@ package gui;
 
 import model.Spring;
 
-import javax.swing.*;
-import java.awt.*;
-
 /**
- * The SpringGUI class represents the graphical user interface for displaying a spring.
- * It handles loading and scaling the spring image and drawing it on a given graphics context.
+ * The SpringGUI class is the node of a spring in the {@link Scene} of the map.
+ * It is drawn with the spring image from the {@link SpriteCache}.
  */
-public class SpringGUI {
-    private Spring spring;
-    public ImageIcon springImg;
+public class SpringGUI extends SceneNode {
+    private final Spring spring;
 
     /**
      * Constructs a SpringGUI with the specified Spring model.
-     * Loads and scales the spring image.
      *
      * @param spring the Spring object representing the model of the spring
      */
     public SpringGUI(Spring spring) {
+        super(Scene.Layer.SPRINGS);
         this.spring = spring;
-        Image originalImage = new ImageIcon("src\\gui\\images\\Spring.png").getImage();
-        Image scaledImage = originalImage.getScaledInstance(spring.width, spring.height, Image.SCALE_SMOOTH);
-        this.springImg = new ImageIcon(scaledImage);
+        update();
+    }
+
+    @Override
+    public Spring getModel() {
+        return spring;
     }
 
     /**
-     * Draws the spring image at the spring's position on the given graphics context.
-     *
-     * @param g the Graphics context on which to draw the spring image
+     * Takes the spring's position and size from the spring.
      */
-    public void draw(Graphics g) {
-        Point pos = spring.getPosition();
-        g.drawImage(springImg.getImage(), pos.x, pos.y, null);
+    @Override
+    public void update() {
+        set(spring.getPosition(), spring.width, spring.height,
+                SpriteCache.get(SpriteCache.Asset.SPRING, spring.width, spring.height), true);
     }
 }
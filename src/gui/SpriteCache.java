@@ -0,0 +1,198 @@
+package gui;
+
+import model.Cistern;
+import model.Element;
+import model.EndOfPipe;
+import model.Game;
+import model.Pipe;
+import model.Pump;
+import model.Spring;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The images the map is drawn with, loaded from disk once and scaled once for every size they are
+ * drawn at, so that painting the map does no image loading or scaling. The scaled images are created
+ * in the format of the screen, so they are drawn without conversion.
+ * <p>
+ * Images are loaded the first time they are asked for. {@link #preload(Game)} loads the images for the
+ * elements of a game on a background thread, so that the first frame does not have to wait for them.
+ * The cache is shared by the whole application and safe to use from any thread.
+ */
+public final class SpriteCache {
+    /**
+     * The image files, one for every look of a game object.
+     */
+    public enum Asset {
+        PIPE("Pipe.png"),
+        PIPE_VERTICAL("PipeVERTICAL.png"),
+        PUNCTURED_PIPE("PuncturedPipe.png"),
+        PUNCTURED_PIPE_VERTICAL("PuncturedPipeVERTICAL.png"),
+        PUMP("Pump.png"),
+        CISTERN("Cistern.png"),
+        SPRING("Spring.png"),
+        END_OF_PIPE("endOfPipeImg.png"),
+        END_OF_PIPE_VERTICAL("endOfPipeImg_vertical.png"),
+        PLUMBER("Plumber.png"),
+        SABOTEUR("Saboteur.png"),
+        MAP_TILES("MapTiles2.png"),
+        MENU_BACKGROUND("desert.jpg");
+
+        private final String file;
+
+        Asset(String file) {
+            this.file = file;
+        }
+
+        /**
+         * Returns the image of a pipe in the given state.
+         */
+        public static Asset pipe(boolean vertical, boolean working) {
+            if (working) {
+                return vertical ? PIPE_VERTICAL : PIPE;
+            }
+            return vertical ? PUNCTURED_PIPE_VERTICAL : PUNCTURED_PIPE;
+        }
+
+        /**
+         * Returns the image of an end of a pipe with the given orientation.
+         */
+        public static Asset endOfPipe(boolean vertical) {
+            return vertical ? END_OF_PIPE_VERTICAL : END_OF_PIPE;
+        }
+    }
+
+    /**
+     * The directory the image files are loaded from, relative to the directory the game is run in.
+     */
+    private static final Path IMAGES = Path.of("src", "gui", "images");
+
+    private record Key(Asset asset, int width, int height) {}
+
+    private static final Map<Asset, Optional<BufferedImage>> originals = new ConcurrentHashMap<>();
+    private static final Map<Key, Optional<BufferedImage>> sprites = new ConcurrentHashMap<>();
+
+    private SpriteCache() {}
+
+    /**
+     * Returns the given image scaled to the given size, or null if the image file cannot be read or
+     * the size is empty.
+     */
+    public static BufferedImage get(Asset asset, int width, int height) {
+        Optional<BufferedImage> sprite = sprites.get(new Key(asset, width, height));
+        if (sprite == null) {
+            sprite = sprites.computeIfAbsent(new Key(asset, width, height), SpriteCache::scale);
+        }
+        return sprite.orElse(null);
+    }
+
+    /**
+     * Returns the given image at the size of its file, or null if the file cannot be read. Used for
+     * images that are scaled to the size of a window, which would fill the cache with sizes that are
+     * only drawn at once.
+     */
+    public static BufferedImage getOriginal(Asset asset) {
+        return originals.computeIfAbsent(asset, SpriteCache::load).orElse(null);
+    }
+
+    private static Optional<BufferedImage> scale(Key key) {
+        if (key.width() <= 0 || key.height() <= 0) {
+            return Optional.empty();
+        }
+        return originals.computeIfAbsent(key.asset(), SpriteCache::load)
+                .map(original -> scale(original, key.width(), key.height()));
+    }
+
+    private static Optional<BufferedImage> load(Asset asset) {
+        try {
+            return Optional.ofNullable(ImageIO.read(IMAGES.resolve(asset.file).toFile()));
+        } catch (IOException e) {
+            System.err.println("Could not load " + asset.file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Scales an image smoothly, halving it step by step while it is more than twice the size asked for,
+     * as a single step would skip most of its pixels.
+     */
+    private static BufferedImage scale(BufferedImage original, int width, int height) {
+        Image current = original;
+        int w = original.getWidth();
+        int h = original.getHeight();
+        while (w > 2 * width || h > 2 * height) {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            current = draw(current, w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+        return draw(current, width, height, -1);
+    }
+
+    /**
+     * Draws an image into a new one of the given size.
+     *
+     * @param type the type of the new image, or -1 for one compatible with the screen
+     */
+    private static BufferedImage draw(Image image, int width, int height, int type) {
+        BufferedImage scaled = type >= 0 ? new BufferedImage(width, height, type) : createCompatibleImage(width, height);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Starts loading the images of the elements of the given game, in every state they can be drawn in,
+     * on a background thread.
+     */
+    public static void preload(Game game) {
+        Set<Key> keys = new LinkedHashSet<>(); // a map has few different sizes of elements
+        synchronized (game) {
+            for (Element e : game.elementList) {
+                if (e instanceof Pipe pipe) {
+                    keys.add(new Key(Asset.pipe(pipe.vertical, true), e.width, e.height));
+                    keys.add(new Key(Asset.pipe(pipe.vertical, false), e.width, e.height));
+                } else if (e instanceof Pump) {
+                    keys.add(new Key(Asset.PUMP, e.width, e.height));
+                } else if (e instanceof Cistern) {
+                    keys.add(new Key(Asset.CISTERN, e.width, e.height));
+                } else if (e instanceof Spring) {
+                    keys.add(new Key(Asset.SPRING, e.width, e.height));
+                }
+            }
+            for (EndOfPipe end : game.endOfPipeList) {
+                keys.add(new Key(Asset.endOfPipe(end.currentPipe.vertical), end.width, end.height));
+            }
+        }
+        Thread thread = new Thread(() -> {
+            for (Key key : keys) {
+                get(key.asset(), key.width(), key.height());
+            }
+        }, "sprite-preload");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+}
@@ -0,0 +1,136 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the elements that need to be updated on the next tick. An element stays active as
+ * long as its update changes anything. Once an update changes nothing, the element is skipped until
+ * its own state or the state of a neighbouring element changes again, because until then its update
+ * would not change anything either. Springs always give water, so they are always active.
+ * <p>
+ * Elements are identified by their position in the propagation order the tracker was created for,
+ * and their neighbours are looked up when it is created, so a new tracker is needed whenever the
+ * topology changes.
+ */
+final class ActivityTracker implements ElementListener {
+    private final List<Element> order;
+    private final Map<Element, Integer> positions;
+    private final int[][] neighbours;
+    private final BitSet active;
+    private boolean changed;
+
+    /**
+     * Creates a tracker with all elements of the given order active.
+     *
+     * @param order the elements in the order in which they are updated
+     */
+    ActivityTracker(List<Element> order) {
+        this.order = order;
+        positions = new IdentityHashMap<>(order.size() * 2);
+        for (int i = 0; i < order.size(); i++) {
+            positions.put(order.get(i), i);
+        }
+        // the links are followed both ways: a pump reads the state of its input pipe even if the pipe
+        // is not connected to it, and has to be woken up when that state changes
+        int[] degree = new int[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            int from = i;
+            NetworkComponents.forEachNeighbour(order.get(i), n -> {
+                Integer to = positions.get(n);
+                if (to != null && to != from) {
+                    degree[from]++;
+                    degree[to]++;
+                }
+            });
+        }
+        neighbours = new int[order.size()][];
+        for (int i = 0; i < order.size(); i++) {
+            neighbours[i] = new int[degree[i]];
+        }
+        int[] filled = new int[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            int from = i;
+            NetworkComponents.forEachNeighbour(order.get(i), n -> {
+                Integer to = positions.get(n);
+                if (to != null && to != from) {
+                    neighbours[from][filled[from]++] = to;
+                    neighbours[to][filled[to]++] = from;
+                }
+            });
+        }
+        for (int i = 0; i < order.size(); i++) {
+            neighbours[i] = distinct(neighbours[i]);
+        }
+        active = new BitSet(order.size());
+        active.set(0, order.size());
+    }
+
+    /**
+     * Returns the given positions without duplicates, in ascending order.
+     */
+    private static int[] distinct(int[] positions) {
+        Arrays.sort(positions);
+        int count = 0;
+        for (int i = 0; i < positions.length; i++) {
+            if (i == 0 || positions[i] != positions[i - 1]) {
+                positions[count++] = positions[i];
+            }
+        }
+        return count == positions.length ? positions : Arrays.copyOf(positions, count);
+    }
+
+    /**
+     * Updates the active elements once, in order. Elements activated by an update further down the order
+     * are updated in the same tick, elements activated further up on the next one.
+     *
+     * @param metrics the metrics to record the time of every update in, or null not to time them
+     * @return the number of elements updated
+     */
+    int tick(EngineMetrics metrics) {
+        int touched = 0;
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
+            Element e = order.get(i);
+            changed = false;
+            if (metrics != null) {
+                metrics.timeUpdate(e);
+            } else {
+                e.update();
+            }
+            touched++;
+            if (!changed && !(e instanceof Spring)) {
+                active.clear(i);
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Activates all elements, e.g. after their state was changed without notifications.
+     */
+    void activateAll() {
+        active.set(0, order.size());
+    }
+
+    @Override
+    public void elementChanged(Element element, ElementChange change) {
+        if (!change.affectsFlow()) {
+            return;
+        }
+        changed = true;
+        Integer position = positions.get(element);
+        if (position != null) {
+            active.set(position);
+            for (int n : neighbours[position]) {
+                active.set(n);
+            }
+        }
+    }
+
+    int getActiveCount() {
+        return active.cardinality();
+    }
+}
@@ -2,8 +2,6 @@ package model;/* added a game instance attribute for cistern class
 Added two new attributes numOfCreatedPipes and numOfCreatedPumps
 */
 
-import gui.MapGUI;
-
 import java.awt.*;
 import java.util.Random;
 
@@ -41,6 +39,11 @@ public class Cistern extends Element {
      *The number of turns remaining until a new pump can be manufactured.
      */
     private int turnsUntilPumpReady = 1; // we can decide on this later.
+    /**
+     * The pending manufacturing of a pipe and of a pump, or null if they have not been scheduled yet.
+     */
+    private TimingWheel.Timeout pipeManufacturing;
+    private TimingWheel.Timeout pumpManufacturing;
     public Pump manufacturedPump = null;
     /**
      * Initiates the manufacturing process for a new pipe.
@@ -57,15 +60,17 @@ public class Cistern extends Element {
             g.removeCistern(this);
             Pipe p = new Pipe("New Pipe " + numOfcreatedPipes, new Point (1330,605), true,30,35);
             EndOfPipe newEnd = new EndOfPipe(p,true);
-            g.endOfPipeList.add(newEnd);
+            g.addEndOfPipe(newEnd);
             p.endsOfPipe[0] = newEnd;
             p.endsOfPipe[1] = null;
             g.addPipe(p);
             newEnd.connectToElement(this);
 
-            Pump toBeconnected = g.pumpList.get(7);
-            toBeconnected.connectablePipes.add(p);
-            System.out.println("A new model.Pipe Has been added");
+            if (g.pumpList.size() > 7) { // the pump next to the cistern on the default map
+                Pump toBeconnected = g.pumpList.get(7);
+                toBeconnected.connectablePipes.add(p);
+            }
+            GameLog.log(GameEvent.Kind.ELEMENT, "A new model.Pipe Has been added");
             g.addCistern(this);
         }
         else if(numOfcreatedPipes == 2)
@@ -75,12 +80,14 @@ public class Cistern extends Element {
             EndOfPipe newEnd = new EndOfPipe(p,false);
             p.endsOfPipe[1] = newEnd; // the cistern will be on the right.
             p.endsOfPipe[0] = null;
-            g.endOfPipeList.add(newEnd);
+            g.addEndOfPipe(newEnd);
             g.addPipe(p);
             newEnd.connectToElement(this);
-            Pump toBeconnected = g.pumpList.get(6);
-            toBeconnected.connectablePipes.add(p);
-            System.out.println("A new model.Pipe Has been added");
+            if (g.pumpList.size() > 6) { // the pump next to the cistern on the default map
+                Pump toBeconnected = g.pumpList.get(6);
+                toBeconnected.connectablePipes.add(p);
+            }
+            GameLog.log(GameEvent.Kind.ELEMENT, "A new model.Pipe Has been added");
             g.addCistern(this);
         }
     }
@@ -96,37 +103,63 @@ public class Cistern extends Element {
             Pump temp = new Pump("New Pump " + numOfCreatedPumps, new Point(this.getPosition().x + 72 , this.getPosition().y - 80),75, 75);
             manufacturedPump = temp;
             g.addPump(temp);
-            System.out.println("A new model.Pump Has been Manufactured at the cistern");
-            g.mapGUI.repaint();
+            GameLog.log(GameEvent.Kind.ELEMENT, "A new model.Pump Has been Manufactured at the cistern");
+            g.engine.fireGameChanged();
         }
     }
 
     /**
-     *Updates the status of manufacturing timers and triggers manufacturing processes for pipes and pumps
+     * Increases the water level of the cistern and counts the water towards the collected total.
      */
     @Override
-    public void update() {
-        boolean decrementPumpTurns = true;
-        boolean decrementPipeTurns = true;
-        if(turnsUntilPipeReady == 0)
-        {
-            manufacturePipe(gameInstance);
-            turnsUntilPipeReady = 1;
-            decrementPipeTurns = false;
-        }
-        if(turnsUntilPumpReady == 0)
-        {
-            manufacturePump(gameInstance);
-            turnsUntilPumpReady = rand.nextInt(100,200);
-            decrementPumpTurns = false;
+    public void incrementWater() {
+        if (network != null || scores == null) {
+            super.incrementWater(); // a network counts the collected water itself
+            return;
         }
-        if(decrementPipeTurns)
-        {
-            turnsUntilPipeReady--;
+        int before = getWaterLevel();
+        super.incrementWater();
+        scores.addCollected(getWaterLevel() - before);
+    }
+
+    /**
+     * Cisterns only receive water from the pipes connected to them, so there is nothing to do on a tick.
+     */
+    @Override
+    public void update() {
+    }
+
+    /**
+     * Schedules the manufacturing of pipes and pumps. Once a pipe is ready, the cistern tries to
+     * manufacture one every other turn, and a new pump is ready every 100 to 200 turns.
+     * @param wheel the wheel that advances by a tick at the end of every turn
+     */
+    void scheduleManufacturing(TimingWheel wheel) {
+        if (pipeManufacturing == null) {
+            pipeManufacturing = wheel.schedule(turnsUntilPipeReady + 1, () -> pipeReady(wheel));
+            pumpManufacturing = wheel.schedule(turnsUntilPumpReady + 1, () -> pumpReady(wheel));
         }
-        if(decrementPumpTurns)
-        {
-            turnsUntilPumpReady--;
+    }
+
+    /**
+     * Cancels the pending manufacturing, e.g. because the cistern was removed from the game.
+     */
+    void cancelManufacturing() {
+        if (pipeManufacturing != null) {
+            pipeManufacturing.cancel();
+            pumpManufacturing.cancel();
         }
     }
+
+    private void pipeReady(TimingWheel wheel) {
+        manufacturePipe(gameInstance);
+        turnsUntilPipeReady = 1;
+        pipeManufacturing = wheel.schedule(turnsUntilPipeReady + 1, () -> pipeReady(wheel));
+    }
+
+    private void pumpReady(TimingWheel wheel) {
+        manufacturePump(gameInstance);
+        turnsUntilPumpReady = rand.nextInt(100,200);
+        pumpManufacturing = wheel.schedule(turnsUntilPumpReady + 1, () -> pumpReady(wheel));
+    }
 }
@@ -0,0 +1,41 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the events of a {@link GameLog} in memory, so that a test can check what the game logged.
+ * Call {@link GameLog#flush()} before reading the events, as they arrive on the writer thread of the log.
+ */
+public class CollectingLogSink implements GameLog.Sink {
+    private final List<GameEvent> events = new ArrayList<>();
+
+    @Override
+    public synchronized void accept(GameEvent event) {
+        events.add(event);
+    }
+
+    /**
+     * Returns the events received so far, oldest first.
+     */
+    public synchronized List<GameEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    /**
+     * Returns the texts of the events of the given kind received so far, oldest first.
+     */
+    public synchronized List<String> getTexts(GameEvent.Kind kind) {
+        List<String> texts = new ArrayList<>();
+        for (GameEvent e : events) {
+            if (e.kind() == kind) {
+                texts.add(e.text());
+            }
+        }
+        return texts;
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+}
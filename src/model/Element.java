@@ -8,8 +8,8 @@ Added A new name attribute
  */
 
 import java.awt.*;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Acts as a superclass for elements in the game, including pipes, pumps, cisterns, and springs.
@@ -22,7 +22,12 @@ public abstract class Element {
     public int width;
     public int height;
     public void setPosition(Point position) {
+        if (Objects.equals(position, this.position)) {
+            return;
+        }
+        fireChanged(ElementChange.POSITION);
         this.position = position;
+        fireChanged(ElementChange.POSITION);
     }
     public Point getPosition() {
         return position;
@@ -35,8 +40,8 @@ public abstract class Element {
     {
         name = n;
         this.position = position;
-        connectedPipes = new ArrayList<>();
-        connectablePipes = new ArrayList<>();
+        connectedPipes = new IndexedList<>();
+        connectablePipes = new IndexedList<>();
     }
     /**
      * A Property to get the names of the element
@@ -80,38 +85,98 @@ public abstract class Element {
      */
     private boolean standable = false;
 
+    /**
+     * The compact network this element is a view of, or null if it keeps its state in its own fields.
+     * While attached, the water level, capacity, working and occupied state live in the network's arrays.
+     */
+    FlowNetwork network;
+    /**
+     * The id of this element in {@link #network}.
+     */
+    int networkId;
+    /**
+     * The listener notified of changes to the water level, working state and connections of this element, if any.
+     */
+    private ElementListener listener;
+    /**
+     * The listener notified of every change to this element so that it can be shown, set by the engine
+     * once it has seen the element.
+     */
+    ElementListener observer;
+    /**
+     * The score counters of the game this element belongs to, set by the engine once it has seen the element.
+     */
+    ScoreCounters scores;
+
+    /**
+     * Sets the listener to notify of changes to this element, replacing the previous one.
+     * @param listener the listener, or null to stop notifying
+     */
+    public void setListener(ElementListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Notifies the listener, if there is one, that this element has changed.
+     * @param change what changed
+     */
+    void fireChanged(ElementChange change) {
+        if (listener != null) {
+            listener.elementChanged(this, change);
+        }
+        if (observer != null) {
+            observer.elementChanged(this, change);
+        }
+    }
+
     /**
      * Checks if the element is in working condition and returns a boolean.
      */
     public boolean isWorking(){
-        return works;
+        return network != null ? network.works[networkId] : works;
     }
 
     /**
      * Checks if the element is currently occupied and returns a boolean.
      */
     public boolean isOccupied(){
-        return occupied;
+        return network != null ? network.occupied[networkId] : occupied;
     }
 
     /**
      * Increases the water level within the element.
      */
     public void incrementWater(){
-        waterLevel+=2;
-        if(waterLevel > maxCapacity)
-        {
-            waterLevel = maxCapacity;
+        int before = getWaterLevel();
+        if (network != null) {
+            network.increment(networkId);
+        } else {
+            waterLevel+=2;
+            if(waterLevel > maxCapacity)
+            {
+                waterLevel = maxCapacity;
+            }
+        }
+        if (getWaterLevel() != before) {
+            fireChanged(ElementChange.WATER_LEVEL);
         }
     }
     /**
      * Decreases the water level within the element.
      */
     public void decrementWater(){
-        waterLevel = waterLevel - 2;
-        if(waterLevel < 0)
-        {
-            waterLevel = 0;
+        int before = getWaterLevel();
+        if (network != null) {
+            network.decrement(networkId);
+        } else {
+            waterLevel = waterLevel - 2;
+            if(waterLevel < 0)
+            {
+                waterLevel = 0;
+            }
+        }
+        if (getWaterLevel() != before) {
+            fireChanged(ElementChange.WATER_LEVEL);
         }
     }
 
@@ -123,7 +188,15 @@ public abstract class Element {
      * @param bool true if the element is to be occupied, false otherwise.
      */
     public void setOccupied(boolean bool) {
-        occupied = bool;
+        if (bool == isOccupied()) {
+            return;
+        }
+        if (network != null) {
+            network.occupied[networkId] = bool;
+        } else {
+            occupied = bool;
+        }
+        fireChanged(ElementChange.OCCUPANCY);
     }
 
     /**
@@ -131,7 +204,7 @@ public abstract class Element {
      * @return The maximum water capacity.
      */
     public int getMaxCapacity() {
-        return maxCapacity;
+        return network != null ? network.maxCapacity[networkId] : maxCapacity;
     }
 
     /**
@@ -139,11 +212,12 @@ public abstract class Element {
      * @return The current water level.
      */
     public int getWaterLevel() {
-        return waterLevel;
+        return network != null ? network.waterLevel[networkId] : waterLevel;
     }
 
     /**
      * An abstract method to be implemented by subclasses for element-specific updates.
+     * Called on every tick of the simulation clock to move water through the system.
      */
     public abstract void update();
 
@@ -166,7 +240,15 @@ public abstract class Element {
      * @param bool true if the element is to be set as working, false if not.
      */
     public void setWorks(boolean bool) {
-        works = bool;
+        if (bool == isWorking()) {
+            return;
+        }
+        if (network != null) {
+            network.works[networkId] = bool;
+        } else {
+            works = bool;
+        }
+        fireChanged(ElementChange.WORKS);
     }
 
     /**
@@ -174,7 +256,21 @@ public abstract class Element {
      * @param value the maximum water capacity to set.
      */
     public void setMaxCapacity(int value) {
-        maxCapacity = value;
+        if (network != null) {
+            network.maxCapacity[networkId] = value;
+        } else {
+            maxCapacity = value;
+        }
+    }
+
+    /**
+     * Takes back the state that was kept in a {@link FlowNetwork} while this element was attached to it.
+     */
+    void restoreState(int waterLevel, int maxCapacity, boolean works, boolean occupied) {
+        this.waterLevel = waterLevel;
+        this.maxCapacity = maxCapacity;
+        this.works = works;
+        this.occupied = occupied;
     }
 
     /**
@@ -208,7 +304,11 @@ public abstract class Element {
     }
 
     public void setVisible(boolean visible) {
+        if (visible == this.visible) {
+            return;
+        }
         this.visible = visible;
+        fireChanged(ElementChange.VISIBILITY);
     }
 
 }
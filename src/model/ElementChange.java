@@ -0,0 +1,46 @@
+package model;
+
+/**
+ * The kinds of state changes an {@link Element} reports to its {@link ElementListener}.
+ */
+public enum ElementChange {
+    /**
+     * The water level of the element went up or down.
+     */
+    WATER_LEVEL(true),
+    /**
+     * The element broke down, was punctured or was fixed.
+     */
+    WORKS(true),
+    /**
+     * A pipe was connected to or disconnected from the element, or the element was added to or removed
+     * from the map.
+     */
+    CONNECTIONS(true),
+    /**
+     * The element is about to move, or has moved. Reported both before and after the move, so that
+     * listeners learn both the place it leaves and the place it moves to.
+     */
+    POSITION(false),
+    /**
+     * The element was hidden or shown, such as a pump picked up from a cistern.
+     */
+    VISIBILITY(false),
+    /**
+     * A player stepped onto or off the element.
+     */
+    OCCUPANCY(false);
+
+    private final boolean affectsFlow;
+
+    ElementChange(boolean affectsFlow) {
+        this.affectsFlow = affectsFlow;
+    }
+
+    /**
+     * Returns whether the change can change how water moves through the element.
+     */
+    public boolean affectsFlow() {
+        return affectsFlow;
+    }
+}
@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Receives the state changes of the elements it is registered with.
+ */
+public interface ElementListener {
+    /**
+     * Called right after the state of an element has changed, on the thread that changed it.
+     *
+     * @param element the element that changed
+     * @param change  what changed
+     */
+    void elementChanged(Element element, ElementChange change);
+}
@@ -85,6 +85,7 @@ public class EndOfPipe {
     public void connectToElement(Element e){
         connectedElement = e;
         e.connectedPipes.add(currentPipe);
+        e.fireChanged(ElementChange.CONNECTIONS);
     }
 
     /**
@@ -94,6 +95,7 @@ public class EndOfPipe {
     public void disconnectFromElement(Element e){
         connectedElement = null;
         e.connectedPipes.remove(currentPipe);
+        e.fireChanged(ElementChange.CONNECTIONS);
     }
 
     /**
@@ -115,6 +117,7 @@ public class EndOfPipe {
             connectedElement.connectedPipes.remove(currentPipe);
             currentPipe = p;
             connectedElement.connectedPipes.add(currentPipe);
+            connectedElement.fireChanged(ElementChange.CONNECTIONS);
         }
         else
         {
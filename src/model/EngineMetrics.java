@@ -0,0 +1,157 @@
+package model;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The latency histograms of a {@link GameEngine}: how long its ticks take, how long players take for
+ * their turns, how long the map takes to repaint, and, if enabled, how long a single element of each
+ * type takes to update. They can be read directly, registered with JMX to be watched in a console such
+ * as JConsole, and dumped as text at a fixed period.
+ * <p>
+ * Timing single element updates costs about as much as the updates themselves, so it is off unless
+ * {@link #setElementTiming(boolean)} is called or the {@value #ELEMENT_TIMING_PROPERTY} system property
+ * is set to true. Elements are only timed in the default mode, as the compact and double buffered
+ * modes move water without updating the elements one by one.
+ */
+public final class EngineMetrics {
+    /**
+     * The system property that enables timing single element updates.
+     */
+    public static final String ELEMENT_TIMING_PROPERTY = "pipes.metrics.elements";
+    /**
+     * The system property giving the period in seconds at which a started game dumps its metrics to the
+     * standard error, or 0 not to dump them.
+     */
+    public static final String DUMP_PERIOD_PROPERTY = "pipes.metrics.dump";
+    /**
+     * The domain of the names the histograms are registered with JMX under.
+     */
+    public static final String JMX_DOMAIN = "pipes";
+
+    public final LatencyHistogram tick = new LatencyHistogram("tick");
+    public final LatencyHistogram turn = new LatencyHistogram("turn");
+    public final LatencyHistogram repaint = new LatencyHistogram("repaint");
+    public final LatencyHistogram pipeUpdate = new LatencyHistogram("update.Pipe");
+    public final LatencyHistogram pumpUpdate = new LatencyHistogram("update.Pump");
+    public final LatencyHistogram springUpdate = new LatencyHistogram("update.Spring");
+    public final LatencyHistogram cisternUpdate = new LatencyHistogram("update.Cistern");
+
+    private volatile boolean elementTiming = Boolean.getBoolean(ELEMENT_TIMING_PROPERTY);
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Returns all histograms, in the order they are dumped.
+     */
+    public List<LatencyHistogram> histograms() {
+        return List.of(tick, turn, repaint, pipeUpdate, pumpUpdate, springUpdate, cisternUpdate);
+    }
+
+    public void setElementTiming(boolean elementTiming) {
+        this.elementTiming = elementTiming;
+    }
+
+    public boolean isElementTiming() {
+        return elementTiming;
+    }
+
+    /**
+     * Updates an element and records how long it took in the histogram of its type.
+     */
+    void timeUpdate(Element e) {
+        long start = System.nanoTime();
+        e.update();
+        long elapsed = System.nanoTime() - start;
+        if (e instanceof Pipe) {
+            pipeUpdate.record(elapsed);
+        } else if (e instanceof Pump) {
+            pumpUpdate.record(elapsed);
+        } else if (e instanceof Spring) {
+            springUpdate.record(elapsed);
+        } else if (e instanceof Cistern) {
+            cisternUpdate.record(elapsed);
+        }
+    }
+
+    /**
+     * Forgets the values recorded in all histograms.
+     */
+    public void reset() {
+        for (LatencyHistogram h : histograms()) {
+            h.reset();
+        }
+    }
+
+    /**
+     * Registers every histogram with the platform MBean server as
+     * {@code pipes:type=EngineMetrics,name=<histogram>}, replacing the histograms of an earlier game.
+     */
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (LatencyHistogram h : histograms()) {
+                ObjectName name = objectName(h);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(h, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the engine metrics with JMX", e);
+        }
+    }
+
+    private static ObjectName objectName(LatencyHistogram h) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=EngineMetrics,name=" + h.getName());
+    }
+
+    /**
+     * Returns a table of the histograms that have recorded any values, with durations in microseconds.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%-16s %10s %10s %10s %10s %10s %10s%n",
+                "metric", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (LatencyHistogram h : histograms()) {
+            if (h.getCount() > 0) {
+                sb.append(String.format(Locale.ROOT, "%-16s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        h.getName(), h.getCount(), h.getMeanMicros(), h.getP50Micros(), h.getP99Micros(),
+                        h.getP999Micros(), h.getMaxMicros()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Starts printing {@link #dump()} to the given stream at the given period, on a thread of its own.
+     * Does nothing if the metrics are already being dumped.
+     */
+    public synchronized void startDump(PrintStream out, long period, TimeUnit unit) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+    }
+
+    /**
+     * Stops the periodic dump.
+     */
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+}
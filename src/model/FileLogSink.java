@@ -0,0 +1,52 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Appends the events of a {@link GameLog} to a text file, one line per event with its time and kind:
+ * <pre>
+ * 2024-05-01T12:00:00.123Z ACTION Saboteur 1 punctured Pipe3
+ * </pre>
+ * The file is flushed after every batch of events the log writes.
+ */
+public class FileLogSink implements GameLog.Sink, Closeable {
+    private final BufferedWriter out;
+
+    /**
+     * Opens the given file, appending to it if it exists.
+     */
+    public FileLogSink(Path path) throws IOException {
+        out = Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void accept(GameEvent event) {
+        try {
+            out.write(Instant.ofEpochMilli(event.timeMillis()) + " " + event.kind() + " " + event.text());
+            out.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,653 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A compact, struct-of-arrays representation of a pipe system. Every element has an id, and its
+ * state lives in primitive arrays indexed by that id instead of in the fields of an {@link Element}.
+ * Pipe ends and pump connections are stored as id arrays, so {@link #step()} moves water with a
+ * tight loop over those arrays, without following object references or checking types.
+ * <p>
+ * A network is either built directly through a {@link Builder}, which needs no element objects at all,
+ * or compiled from the elements of a game with {@link #compile(List)}. A compiled network can be
+ * {@link #attach() attached}, after which the elements read and write their state through it and
+ * act as views over the arrays.
+ * <p>
+ * The water flow rules are the same as those of {@link Pipe#update()}, {@link Pump#update()} and
+ * {@link Spring#update()}, and elements are stepped in id order, so a step gives the same result as
+ * updating the compiled elements one after the other.
+ * <p>
+ * {@link #stepBuffered(ForkJoinPool)} instead computes the next water level of every element from the
+ * levels of the previous step only, into a second buffer that replaces the first once all elements are
+ * done. No element sees the changes of another in the same step, so the elements can be stepped in any
+ * order and on any number of threads with the same result.
+ */
+public final class FlowNetwork {
+    public static final byte PIPE = 0;
+    public static final byte PUMP = 1;
+    public static final byte SPRING = 2;
+    public static final byte CISTERN = 3;
+
+    /**
+     * Marks the absence of an element, e.g. a pump without an output pipe.
+     */
+    public static final int NONE = -1;
+    /**
+     * Marks a pipe end that does not exist. A pipe with a missing end leaks.
+     */
+    public static final int NO_END = -1;
+    /**
+     * Marks a pipe end that exists but is not connected to any element.
+     */
+    public static final int UNCONNECTED = -2;
+
+    final int size;
+    /**
+     * The number of elements that take part in a step. Elements with a higher id are only referenced
+     * by the stepped ones, e.g. a pipe that was removed from the game but is still a pump's input pipe.
+     */
+    final int stepCount;
+    final byte[] kind;
+    /**
+     * The current water levels. Replaced by {@link #nextWaterLevel} at the end of a buffered step.
+     */
+    int[] waterLevel;
+    /**
+     * The water levels being computed by a buffered step.
+     */
+    private int[] nextWaterLevel;
+    final int[] maxCapacity;
+    final boolean[] works;
+    final boolean[] occupied;
+    final int[] leakedAmount;
+    final int[] givenWater;
+    final int[] end0;
+    final int[] end1;
+    final int[] inPipe;
+    final int[] outPipe;
+    /**
+     * The connected pipes of element {@code i} are {@code connections[connectionStart[i]]} up to
+     * {@code connections[connectionStart[i + 1] - 1]}.
+     */
+    final int[] connectionStart;
+    final int[] connections;
+    /**
+     * The elements that may pass water to element {@code i} on a step, i.e. the springs and pumps it is
+     * connected to, the pipes whose second end it is at and the pumps it is the output of, are
+     * {@code feeders[feederStart[i]]} up to {@code feeders[feederStart[i + 1] - 1]}. The pumps that may
+     * drain it are listed the same way in {@code drainers}. Built on the first buffered step.
+     */
+    private int[] feederStart;
+    private int[] feeders;
+    private int[] drainerStart;
+    private int[] drainers;
+
+    /**
+     * The elements this network was compiled from, indexed by id, or null if it was built without them.
+     */
+    private final Element[] elements;
+    private boolean attached = false;
+    /**
+     * The counters that collected and leaked water is added to, if any.
+     */
+    private ScoreCounters scores;
+
+    private FlowNetwork(Builder b, Element[] elements) {
+        size = b.size;
+        stepCount = b.stepCount < 0 ? b.size : b.stepCount;
+        kind = Arrays.copyOf(b.kind, size);
+        waterLevel = Arrays.copyOf(b.waterLevel, size);
+        maxCapacity = Arrays.copyOf(b.maxCapacity, size);
+        works = Arrays.copyOf(b.works, size);
+        occupied = Arrays.copyOf(b.occupied, size);
+        leakedAmount = Arrays.copyOf(b.leakedAmount, size);
+        givenWater = Arrays.copyOf(b.givenWater, size);
+        end0 = Arrays.copyOf(b.end0, size);
+        end1 = Arrays.copyOf(b.end1, size);
+        inPipe = Arrays.copyOf(b.inPipe, size);
+        outPipe = Arrays.copyOf(b.outPipe, size);
+
+        // Lay out the connections of each element next to each other.
+        connectionStart = new int[size + 1];
+        for (int k = 0; k < b.connectionCount; k++) {
+            connectionStart[b.connectionFrom[k] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            connectionStart[i + 1] += connectionStart[i];
+        }
+        connections = new int[b.connectionCount];
+        int[] next = Arrays.copyOf(connectionStart, size);
+        for (int k = 0; k < b.connectionCount; k++) {
+            connections[next[b.connectionFrom[k]]++] = b.connectionTo[k];
+        }
+        this.elements = elements;
+    }
+
+    /**
+     * Compiles the given elements into a network. The elements keep their ids in list order, followed by
+     * any element that is referenced by them without being in the list. The current state of the elements
+     * is copied into the network, but they are not attached to it.
+     *
+     * @param elementList the elements to compile, in the order in which they are updated
+     * @return the compiled network
+     */
+    public static FlowNetwork compile(List<? extends Element> elementList) {
+        Map<Element, Integer> ids = new IdentityHashMap<>();
+        Deque<Element> pending = new ArrayDeque<>();
+        for (Element e : elementList) {
+            if (!ids.containsKey(e)) {
+                ids.put(e, ids.size());
+                pending.add(e);
+            }
+        }
+        int stepCount = ids.size();
+
+        // Discover the elements that are referenced but not listed, so that their state is available too.
+        Element[] elements = new Element[Math.max(16, ids.size())];
+        Builder builder = new Builder(ids.size());
+        while (!pending.isEmpty()) {
+            Element e = pending.poll();
+            int id = ids.get(e);
+            if (id >= elements.length) {
+                elements = Arrays.copyOf(elements, elements.length * 2);
+            }
+            elements[id] = e;
+            for (Element referenced : references(e)) {
+                if (referenced != null && !ids.containsKey(referenced)) {
+                    ids.put(referenced, ids.size());
+                    pending.add(referenced);
+                }
+            }
+        }
+        elements = Arrays.copyOf(elements, ids.size());
+
+        for (Element e : elements) {
+            int id;
+            if (e instanceof Pipe pipe) {
+                id = builder.addPipe(pipe.getMaxCapacity());
+                builder.leakedAmount[id] = pipe.getLeakedAmount();
+                builder.end0[id] = endId(pipe.endsOfPipe[0], ids);
+                builder.end1[id] = endId(pipe.endsOfPipe[1], ids);
+            } else if (e instanceof Pump pump) {
+                id = builder.addPump(pump.getMaxCapacity());
+                builder.setPumpPipes(id, idOf(pump.inPipe, ids), idOf(pump.outPipe, ids));
+            } else if (e instanceof Spring spring) {
+                id = builder.addSpring();
+                builder.givenWater[id] = spring.getGivenWater();
+            } else {
+                id = builder.addCistern();
+            }
+            builder.maxCapacity[id] = e.getMaxCapacity();
+            builder.waterLevel[id] = e.getWaterLevel();
+            builder.works[id] = e.isWorking();
+            builder.occupied[id] = e.isOccupied();
+            if (e instanceof Pump || e instanceof Spring) {
+                for (Pipe p : e.connectedPipes) {
+                    builder.connect(id, ids.get(p));
+                }
+            }
+        }
+        builder.stepCount = stepCount;
+        return new FlowNetwork(builder, elements);
+    }
+
+    private static Element[] references(Element e) {
+        if (e instanceof Pipe pipe) {
+            return new Element[]{
+                    pipe.endsOfPipe[0] == null ? null : pipe.endsOfPipe[0].getConnectedElement(),
+                    pipe.endsOfPipe[1] == null ? null : pipe.endsOfPipe[1].getConnectedElement()};
+        }
+        if (e instanceof Pump || e instanceof Spring) {
+            Element[] referenced = e.connectedPipes.toArray(new Element[e.connectedPipes.size() + 2]);
+            if (e instanceof Pump pump) {
+                referenced[referenced.length - 2] = pump.inPipe;
+                referenced[referenced.length - 1] = pump.outPipe;
+            }
+            return referenced;
+        }
+        return new Element[0];
+    }
+
+    private static int idOf(Element e, Map<Element, Integer> ids) {
+        return e == null ? NONE : ids.get(e);
+    }
+
+    private static int endId(EndOfPipe end, Map<Element, Integer> ids) {
+        if (end == null) {
+            return NO_END;
+        }
+        Element connected = end.getConnectedElement();
+        return connected == null ? UNCONNECTED : ids.get(connected);
+    }
+
+    /**
+     * Sets the counters that water arriving at a cistern or leaking from a pipe is added to.
+     *
+     * @param scores the counters, or null to not count the water
+     */
+    public void setScores(ScoreCounters scores) {
+        this.scores = scores;
+    }
+
+    /**
+     * Returns the number of elements in the network.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes the compiled elements views over this network: from now on they read and write their
+     * state through its arrays.
+     */
+    public void attach() {
+        if (elements == null) {
+            throw new IllegalStateException("A network built without elements cannot be attached.");
+        }
+        for (int i = 0; i < size; i++) {
+            elements[i].network = this;
+            elements[i].networkId = i;
+        }
+        attached = true;
+    }
+
+    /**
+     * Copies the state in the network back into the compiled elements and detaches them, so that
+     * they keep their state in their own fields again.
+     */
+    public void detach() {
+        if (!attached) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            Element e = elements[i];
+            if (e.network != this) {
+                continue; // already attached to a newer network
+            }
+            e.network = null;
+            e.restoreState(waterLevel[i], maxCapacity[i], works[i], occupied[i]);
+            if (e instanceof Pipe pipe) {
+                pipe.setLeakedAmount(leakedAmount[i]);
+            } else if (e instanceof Spring spring) {
+                spring.restoreGivenWater(givenWater[i]);
+            }
+        }
+        attached = false;
+    }
+
+    /**
+     * Moves water through the network once.
+     */
+    public void step() {
+        for (int i = 0; i < stepCount; i++) {
+            switch (kind[i]) {
+                case PIPE -> stepPipe(i);
+                case PUMP -> stepPump(i);
+                case SPRING -> stepSpring(i);
+                default -> { } // cisterns only receive water
+            }
+        }
+    }
+
+    private void stepPipe(int i) {
+        if (!works[i] || end0[i] == NO_END || end1[i] == NO_END) {
+            leak(i);
+        } else if (waterLevel[i] >= 2 && end1[i] >= 0) {
+            int next = end1[i];
+            if (kind[next] != PUMP || inPipe[next] == i) {
+                increment(next);
+            }
+        }
+    }
+
+    private void stepPump(int i) {
+        int in = inPipe[i];
+        int out = outPipe[i];
+        if (in == NONE && out == NONE) {
+            return;
+        }
+        if (in != NONE && !works[in] && works[i]) {
+            decrement(i);
+        }
+        if (works[i] && waterLevel[i] >= 2 && out != NONE) {
+            increment(out);
+        }
+        for (int k = connectionStart[i]; k < connectionStart[i + 1]; k++) {
+            int p = connections[k];
+            if (p != in && p != out && waterLevel[p] >= 2) {
+                decrement(p);
+            }
+        }
+    }
+
+    private void stepSpring(int i) {
+        for (int k = connectionStart[i]; k < connectionStart[i + 1]; k++) {
+            increment(connections[k]);
+            givenWater[i] += 2;
+        }
+    }
+
+    /**
+     * The number of elements below which a buffered step is done on a single thread.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * Moves water through the network once, computing every element's new water level from the levels
+     * before the step. Water still flows along the same links under the same conditions, but only one
+     * link further per step, and the gains and losses of an element within a step are added up before
+     * its level is limited to between 0 and its capacity.
+     *
+     * @param pool the pool to split the step between, or null to do it on the calling thread
+     */
+    public void stepBuffered(ForkJoinPool pool) {
+        if (feederStart == null) {
+            buildReverseLinks();
+        }
+        if (pool != null && pool.getParallelism() > 1 && size >= PARALLEL_THRESHOLD) {
+            pool.invoke(new BufferedStep(0, size));
+        } else {
+            stepBuffered(0, size);
+        }
+        int[] previous = waterLevel;
+        waterLevel = nextWaterLevel;
+        nextWaterLevel = previous;
+    }
+
+    @SuppressWarnings("serial") // tasks are never serialized
+    private final class BufferedStep extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        BufferedStep(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                stepBuffered(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BufferedStep(from, mid), new BufferedStep(mid, to));
+            }
+        }
+    }
+
+    /**
+     * Computes the next water level of the elements from {@code from} up to {@code to} - 1. Only writes
+     * the state of those elements, so disjoint ranges can be computed at the same time.
+     */
+    private void stepBuffered(int from, int to) {
+        int[] level = waterLevel;
+        long collected = 0;
+        long leaked = 0;
+        for (int i = from; i < to; i++) {
+            long delta = 0;
+            for (int k = feederStart[i]; k < feederStart[i + 1]; k++) {
+                int source = feeders[k];
+                switch (kind[source]) {
+                    case SPRING -> delta += 2;
+                    case PIPE -> {
+                        if (works[source] && end0[source] != NO_END && level[source] >= 2
+                                && (kind[i] != PUMP || inPipe[i] == source)) {
+                            delta += 2;
+                        }
+                    }
+                    default -> {
+                        // a pump passing water on to its output pipe
+                        if (works[source] && level[source] >= 2) {
+                            delta += 2;
+                        }
+                    }
+                }
+            }
+            if (level[i] >= 2) {
+                delta -= 2L * (drainerStart[i + 1] - drainerStart[i]);
+            }
+            if (i < stepCount) {
+                if (kind[i] == PIPE && (!works[i] || end0[i] == NO_END || end1[i] == NO_END)) {
+                    if (level[i] >= 2) {
+                        leakedAmount[i] += 2;
+                        leaked += 2;
+                    }
+                    delta -= 2;
+                } else if (kind[i] == PUMP && inPipe[i] != NONE && !works[inPipe[i]] && works[i]) {
+                    delta -= 2;
+                } else if (kind[i] == SPRING) {
+                    givenWater[i] += 2 * (connectionStart[i + 1] - connectionStart[i]);
+                }
+            }
+            nextWaterLevel[i] = (int) Math.max(0, Math.min(level[i] + delta, maxCapacity[i]));
+            if (kind[i] == CISTERN) {
+                collected += nextWaterLevel[i] - level[i];
+            }
+        }
+        if (scores != null) {
+            scores.addCollected(collected);
+            scores.addLeaked(leaked);
+        }
+    }
+
+    /**
+     * Inverts the links followed by {@link #step()}, so that a buffered step can gather the water
+     * flowing into each element instead of scattering the water flowing out of it.
+     */
+    private void buildReverseLinks() {
+        int[] feederCount = new int[size + 1];
+        int[] drainerCount = new int[size + 1];
+        forEachLink((source, target, drains) -> (drains ? drainerCount : feederCount)[target + 1]++);
+        for (int i = 0; i < size; i++) {
+            feederCount[i + 1] += feederCount[i];
+            drainerCount[i + 1] += drainerCount[i];
+        }
+        feederStart = feederCount;
+        drainerStart = drainerCount;
+        feeders = new int[feederStart[size]];
+        drainers = new int[drainerStart[size]];
+        int[] nextFeeder = Arrays.copyOf(feederStart, size);
+        int[] nextDrainer = Arrays.copyOf(drainerStart, size);
+        forEachLink((source, target, drains) -> {
+            if (drains) {
+                drainers[nextDrainer[target]++] = source;
+            } else {
+                feeders[nextFeeder[target]++] = source;
+            }
+        });
+        nextWaterLevel = new int[size];
+    }
+
+    private interface LinkAction {
+        void accept(int source, int target, boolean drains);
+    }
+
+    /**
+     * Calls the given action for every link along which a stepped element may pass water on or drain it.
+     */
+    private void forEachLink(LinkAction action) {
+        for (int i = 0; i < stepCount; i++) {
+            switch (kind[i]) {
+                case PIPE -> {
+                    if (end1[i] >= 0) {
+                        action.accept(i, end1[i], false);
+                    }
+                }
+                case PUMP -> {
+                    if (outPipe[i] != NONE) {
+                        action.accept(i, outPipe[i], false);
+                    }
+                    if (inPipe[i] != NONE || outPipe[i] != NONE) {
+                        for (int k = connectionStart[i]; k < connectionStart[i + 1]; k++) {
+                            int p = connections[k];
+                            if (p != inPipe[i] && p != outPipe[i]) {
+                                action.accept(i, p, true);
+                            }
+                        }
+                    }
+                }
+                case SPRING -> {
+                    for (int k = connectionStart[i]; k < connectionStart[i + 1]; k++) {
+                        action.accept(i, connections[k], false);
+                    }
+                }
+                default -> { }
+            }
+        }
+    }
+
+    void increment(int i) {
+        int before = waterLevel[i];
+        int level = before + 2;
+        waterLevel[i] = Math.min(level, maxCapacity[i]);
+        if (kind[i] == CISTERN && scores != null) {
+            scores.addCollected(waterLevel[i] - before);
+        }
+    }
+
+    void decrement(int i) {
+        int level = waterLevel[i] - 2;
+        waterLevel[i] = Math.max(level, 0);
+    }
+
+    void leak(int i) {
+        if (waterLevel[i] >= 2) {
+            leakedAmount[i] += 2;
+            if (scores != null) {
+                scores.addLeaked(2);
+            }
+        }
+        decrement(i);
+    }
+
+    /**
+     * Builds a network element by element. Ids are handed out in the order elements are added.
+     */
+    public static final class Builder {
+        private int size = 0;
+        private int stepCount = -1;
+        private byte[] kind;
+        private int[] waterLevel;
+        private int[] maxCapacity;
+        private boolean[] works;
+        private boolean[] occupied;
+        private int[] leakedAmount;
+        private int[] givenWater;
+        private int[] end0;
+        private int[] end1;
+        private int[] inPipe;
+        private int[] outPipe;
+        private int connectionCount = 0;
+        private int[] connectionFrom = new int[16];
+        private int[] connectionTo = new int[16];
+
+        /**
+         * Creates a builder.
+         *
+         * @param expectedSize the number of elements the network is expected to have
+         */
+        public Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            kind = new byte[capacity];
+            waterLevel = new int[capacity];
+            maxCapacity = new int[capacity];
+            works = new boolean[capacity];
+            occupied = new boolean[capacity];
+            leakedAmount = new int[capacity];
+            givenWater = new int[capacity];
+            end0 = new int[capacity];
+            end1 = new int[capacity];
+            inPipe = new int[capacity];
+            outPipe = new int[capacity];
+        }
+
+        private int add(byte elementKind, int capacity) {
+            if (size == kind.length) {
+                int grown = size * 2;
+                kind = Arrays.copyOf(kind, grown);
+                waterLevel = Arrays.copyOf(waterLevel, grown);
+                maxCapacity = Arrays.copyOf(maxCapacity, grown);
+                works = Arrays.copyOf(works, grown);
+                occupied = Arrays.copyOf(occupied, grown);
+                leakedAmount = Arrays.copyOf(leakedAmount, grown);
+                givenWater = Arrays.copyOf(givenWater, grown);
+                end0 = Arrays.copyOf(end0, grown);
+                end1 = Arrays.copyOf(end1, grown);
+                inPipe = Arrays.copyOf(inPipe, grown);
+                outPipe = Arrays.copyOf(outPipe, grown);
+            }
+            int id = size++;
+            kind[id] = elementKind;
+            maxCapacity[id] = capacity;
+            works[id] = true;
+            end0[id] = NO_END;
+            end1[id] = NO_END;
+            inPipe[id] = NONE;
+            outPipe[id] = NONE;
+            return id;
+        }
+
+        public int addPipe(int capacity) {
+            return add(PIPE, capacity);
+        }
+
+        public int addPump(int capacity) {
+            return add(PUMP, capacity);
+        }
+
+        public int addSpring() {
+            return add(SPRING, Integer.MAX_VALUE);
+        }
+
+        public int addCistern() {
+            return add(CISTERN, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Connects an end of a pipe to an element. Water flows from the first end towards the second.
+         *
+         * @param pipe    the id of the pipe
+         * @param end     0 for the first end, 1 for the second
+         * @param element the id of the element, or {@link #UNCONNECTED}
+         */
+        public void setEnd(int pipe, int end, int element) {
+            if (end == 0) {
+                end0[pipe] = element;
+            } else {
+                end1[pipe] = element;
+            }
+        }
+
+        /**
+         * Sets the input and output pipe of a pump, either of which may be {@link #NONE}.
+         */
+        public void setPumpPipes(int pump, int in, int out) {
+            inPipe[pump] = in;
+            outPipe[pump] = out;
+        }
+
+        /**
+         * Adds a pipe to the connected pipes of a pump or spring.
+         */
+        public void connect(int element, int pipe) {
+            if (connectionCount == connectionFrom.length) {
+                connectionFrom = Arrays.copyOf(connectionFrom, connectionCount * 2);
+                connectionTo = Arrays.copyOf(connectionTo, connectionCount * 2);
+            }
+            connectionFrom[connectionCount] = element;
+            connectionTo[connectionCount] = pipe;
+            connectionCount++;
+        }
+
+        public FlowNetwork build() {
+            return new FlowNetwork(this, null);
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package model;
 
-import gui.EndGameGUI;
-import gui.MapGUI;
-
-import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Scanner;
-
-import static java.lang.Thread.sleep;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Serves as the central class for managing the game. It orchestrates gameplay, managing plumbers
@@ -28,23 +29,179 @@ public class Game {
     public List<Pump> pumpList;
     public List<Cistern> cisternList;
     public List<Spring> springList;
-    public List<EndOfPipe> endOfPipeList = new ArrayList<>();
-    private final int[] gameScore = {0, 0}; // Index 0 represents model.Plumber score, index 1 represents model.Saboteur score.
+    public List<EndOfPipe> endOfPipeList = new IndexedList<>();
+    /**
+     * The bounds of the elements and ends of pipes on the map, for finding the one under the mouse.
+     */
+    private final SpatialIndex<Element> elementIndex = new SpatialIndex<>();
+    private final SpatialIndex<EndOfPipe> endOfPipeIndex = new SpatialIndex<>();
+    /**
+     * The water collected by the Plumbers and leaked by the Saboteurs so far.
+     */
+    public final ScoreCounters scores = new ScoreCounters();
     public Timer timer;
-    private volatile char currentAction = '\0';
+    /**
+     * The maximum number of key presses that are kept while waiting for the current player to act.
+     */
+    public static final int ACTION_QUEUE_CAPACITY = 64;
+    /**
+     * Key presses that have not been handled yet, in the order they were made.
+     */
+    private final BlockingQueue<PlayerAction> actionQueue = new LinkedBlockingQueue<>(ACTION_QUEUE_CAPACITY);
+    /**
+     * The time in milliseconds, as given by {@link System#currentTimeMillis()}, at which the current player
+     * was given the turn. Key presses made before it belong to an earlier turn.
+     */
+    public volatile long turnStart = 0;
     public boolean pumpPickedUp = false;
+    /**
+     * Incremented whenever elements are added or removed, or their connections change.
+     */
+    private volatile int topologyVersion = 0;
+    /**
+     * The elements whose connections changed since the engine last rebuilt its view of the topology,
+     * and those of them that were removed from the game. The whole topology is rebuilt instead if
+     * {@link #wholeTopologyChanged} is set.
+     */
+    private final Set<Element> changedElements = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Element> removedElements = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean wholeTopologyChanged = true;
+    /**
+     * The system property naming the map file to play on, and the map played on when it is not set.
+     */
+    public static final String MAP_PROPERTY = "pipes.map";
+    public static final String DEFAULT_MAP = "src/maps/default.map";
+    /**
+     * The duration of a single player's turn in milliseconds.
+     */
+    public long turnDuration = 10000;
+
+    /**
+     * The element and end of pipe currently selected by the players, along with the pending
+     * selection modes. They are set by the user interface and read by the players' actions.
+     */
+    public volatile Element selectedElement;
+    public volatile EndOfPipe selectedEndOfPipe;
+    public volatile boolean isMoveActive = false;
+    public volatile boolean isChangingInputPipe = false;
+    public volatile boolean isChangingOutputPipe = false;
+    public volatile Pump selectedPump = null;
+
+    /**
+     * Queues a key press for the current player. Key presses made while the queue is full are dropped.
+     *
+     * @param key the character of the pressed key
+     */
+    public void queueAction(char key) {
+        actionQueue.offer(new PlayerAction(key, System.currentTimeMillis()));
+    }
+
+    /**
+     * Takes the next key press made during the current turn, waiting until one arrives or the deadline has
+     * passed. Key presses made before the turn started or after the deadline are thrown away, so that
+     * presses left over from one turn are not spent as the actions of the next.
+     *
+     * @param turnStart the time in milliseconds, as given by {@link System#currentTimeMillis()}, at which the turn started
+     * @param deadline  the time in milliseconds at which the turn ends
+     * @return the next key press, or null if none was made before the deadline
+     */
+    public PlayerAction nextAction(long turnStart, long deadline) {
+        try {
+            while (true) {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                PlayerAction action = actionQueue.poll(remaining, TimeUnit.MILLISECONDS);
+                if (action == null) {
+                    return null;
+                }
+                if (action.timestamp() >= turnStart && action.timestamp() <= deadline) {
+                    return action;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    public final GameEngine engine = new GameEngine(this);
 
-    public synchronized void setCurrentAction(char action) {
-        this.currentAction = action;
+    /**
+     * Records that elements were added or removed, or that pipes were connected, disconnected or
+     * chosen as the input or output of a pump. Structures derived from the layout of the pipe system
+     * are rebuilt before the next tick.
+     */
+    public void topologyChanged() {
+        wholeTopologyChanged = true;
+        changedElements.clear();
+        removedElements.clear();
+        topologyVersion++;
+        engine.fireElementChanged(null, ElementChange.CONNECTIONS);
     }
 
-    public synchronized char getCurrentAction() {
-        char action = currentAction;
-        currentAction = '\0';  // Reset after reading
-        return action;
+    /**
+     * Records that the given elements were added, or that their connections or the input or output pipe
+     * of a pump changed. Only the parts of the pipe system around them are rebuilt before the next tick.
+     *
+     * @param elements the elements whose connections changed
+     */
+    public void topologyChanged(Element... elements) {
+        // the changes of single elements do not matter while the whole topology is rebuilt anyway
+        if (!wholeTopologyChanged) {
+            for (Element e : elements) {
+                if (e != null) {
+                    changedElements.add(e);
+                    removedElements.remove(e);
+                }
+            }
+        }
+        topologyVersion++;
+        engine.elementsChanged(elements);
     }
 
-    public MapGUI mapGUI;
+    /**
+     * Records that the given element was removed from the game.
+     */
+    private void elementRemoved(Element element) {
+        if (!wholeTopologyChanged) {
+            changedElements.add(element);
+            removedElements.add(element);
+        }
+        topologyVersion++;
+        element.observer = null;
+        engine.fireElementChanged(element, ElementChange.CONNECTIONS);
+    }
+
+    /**
+     * Returns whether the whole topology has to be rebuilt, because it changed in a way that was not
+     * attributed to individual elements.
+     */
+    boolean isWholeTopologyChanged() {
+        return wholeTopologyChanged;
+    }
+
+    Set<Element> getChangedElements() {
+        return changedElements;
+    }
+
+    Set<Element> getRemovedElements() {
+        return removedElements;
+    }
+
+    /**
+     * Forgets the recorded topology changes, after the engine has rebuilt its view of the topology.
+     */
+    void clearTopologyChanges() {
+        wholeTopologyChanged = false;
+        changedElements.clear();
+        removedElements.clear();
+    }
+
+    /**
+     * Returns a number that changes whenever {@link #topologyChanged()} is called.
+     */
+    public int getTopologyVersion() {
+        return topologyVersion;
+    }
 
     public Game() {}
 
@@ -59,6 +216,19 @@ public class Game {
      * @author Basel Al-Raoush
      */
     public void configureGame(List<String> names, List<Boolean> isPlumberList) {
+        configurePlayers(names, isPlumberList);
+        initMap();
+        startGame();
+    }
+
+    /**
+     * Creates the players and assigns them to teams, alternating between Plumbers and Saboteurs
+     * in the turn order.
+     *
+     * @param names         the names of the players
+     * @param isPlumberList whether the player with the same index joins the Plumbers
+     */
+    public void configurePlayers(List<String> names, List<Boolean> isPlumberList) {
         int numPlayers = names.size();
         players = new Player[numPlayers];
         plumbers = new Plumber[numPlayers / 2];
@@ -81,250 +251,88 @@ public class Game {
                 }
             }
         }
-        initMap();
     }
+    /**
+     * Builds the map the game is played on, from the file named by the system property
+     * {@value #MAP_PROPERTY}, or from {@value #DEFAULT_MAP} if it is not set, and places the players on it.
+     */
     public void initMap() {
 
         // model.Game initialization
-        System.out.println("Initializing the game...");
-        elementList = new ArrayList<>();
-        pipeList = new ArrayList<>();
-        pumpList = new ArrayList<>();
-        springList = new ArrayList<>();
-        cisternList = new ArrayList<>();
-
-            // Creating the spring
-            Spring s1 = new Spring("Spring", new Point(50,300));
-            addSpring(s1);
-
-            //creating the model.Cistern
-            Cistern cistern = new Cistern("Cistern", new Point(1200,300), this);
-
-            // Creating pipes
-            Pipe Pipe1 = new Pipe("Pipe1", new Point(400, 300), false);
-            Pipe Pipe2 = new Pipe("Pipe2", new Point (700, 300), false);
-            Pipe Pipe3 = new Pipe("Pipe3", new Point (1000, 300), false);
-            Pipe Pipe4 = new Pipe("Pipe4", new Point (400, 550), false);
-            Pipe Pipe5 = new Pipe("Pipe5", new Point(635, 350), true);
-            Pipe Pipe6 = new Pipe("Pipe6", new Point(935, 350), true);
-            Pipe Pipe7 = new Pipe("Pipe7", new Point(700, 550), false);
-            Pipe Pipe8 = new Pipe("Pipe8", new Point(1000, 550), false);
-            Pipe Pipe9 = new Pipe("Pipe9", new Point(935, 585), true,30,50);
-            Pipe Pipe10 = new Pipe("Pipe10", new Point(935, 200), true,30,70);
-            Pipe Pipe11 = new Pipe("Pipe11", new Point(980, 150), false,350,30);
-            Pipe pipe12 = new Pipe("Pipe12", new Point(980, 650), false,350,30);
-            // Creating pumps
-            Pump Pump1 = new Pump("Pump1", new Point(600,265));
-            Pump Pump2 = new Pump("Pump2", new Point(900,265));
-            Pump Pump3 = new Pump("Pump3", new Point(600,500));
-            Pump Pump4 = new Pump("Pump4", new Point(900,500));
-            Pump Pump5 = new Pump("Pump5", new Point(912,635),75,50);
-            Pump Pump6 = new Pump("Pump6", new Point(914,125),70,80);
-            Pump Pump7 = new Pump("Pump7", new Point(1320,635),50,50);
-            Pump pump8 = new Pump("Pump8", new Point(1320,125),70,70);
-
-        // Creating ends of pipes
-        EndOfPipe EoP1pipe1 = new EndOfPipe(Pipe1,true);
-        EndOfPipe EoP2pipe1 = new EndOfPipe(Pipe1,false);
-        endOfPipeList.add(EoP1pipe1);
-        endOfPipeList.add(EoP2pipe1);
-
-        EndOfPipe EoP1pipe2 = new EndOfPipe(Pipe2,true);
-        EndOfPipe EoP2pipe2 = new EndOfPipe(Pipe2,false);
-        endOfPipeList.add(EoP1pipe2);
-        endOfPipeList.add(EoP2pipe2);
-
-        EndOfPipe EoP1pipe3 = new EndOfPipe(Pipe3,true);
-        EndOfPipe EoP2pipe3 = new EndOfPipe(Pipe3,false);
-        endOfPipeList.add(EoP1pipe3);
-        endOfPipeList.add(EoP2pipe3);
-
-        EndOfPipe EoP1pipe4 = new EndOfPipe(Pipe4,true);
-        EndOfPipe EoP2pipe4 = new EndOfPipe(Pipe4,false);
-        endOfPipeList.add(EoP1pipe4);
-        endOfPipeList.add(EoP2pipe4);
-
-        EndOfPipe EoP1pipe5 = new EndOfPipe(Pipe5,true);
-        EndOfPipe EoP2pipe5 = new EndOfPipe(Pipe5,false,0,30);
-        endOfPipeList.add(EoP1pipe5);
-        endOfPipeList.add(EoP2pipe5);
-
-        // only one end of pipe for pipe 6
-        EndOfPipe EoP1pipe6 = new EndOfPipe(Pipe6,true);
-        endOfPipeList.add(EoP1pipe6);
-
-        EndOfPipe EoP1pipe7 = new EndOfPipe(Pipe7,true);
-        EndOfPipe EoP2pipe7 = new EndOfPipe(Pipe7,false);
-        endOfPipeList.add(EoP1pipe7);
-        endOfPipeList.add(EoP2pipe7);
-
-        EndOfPipe EoP1pipe8 = new EndOfPipe(Pipe8,true);
-        EndOfPipe EoP2pipe8 = new EndOfPipe(Pipe8,false);
-        endOfPipeList.add(EoP1pipe8);
-        endOfPipeList.add(EoP2pipe8);
-
-        EndOfPipe EoP1pipe9 = new EndOfPipe(Pipe9,true);
-        EndOfPipe EoP2pipe9 = new EndOfPipe(Pipe9,false);
-        endOfPipeList.add(EoP1pipe9);
-        endOfPipeList.add(EoP2pipe9);
-        EndOfPipe EoP1pipe10 = new EndOfPipe(Pipe10,true);
-        EndOfPipe EoP2pipe10 = new EndOfPipe(Pipe10,false);
-        endOfPipeList.add(EoP1pipe10);
-        endOfPipeList.add(EoP2pipe10);
-        EndOfPipe EoP1pipe11 = new EndOfPipe(Pipe11,true);
-        EndOfPipe EoP2pipe11 = new EndOfPipe(Pipe11,false);
-        endOfPipeList.add(EoP1pipe11);
-        endOfPipeList.add(EoP2pipe11);
-        EndOfPipe EoP1pipe12 = new EndOfPipe(pipe12,true);
-        EndOfPipe EoP2pipe12 = new EndOfPipe(pipe12,false);
-        endOfPipeList.add(EoP1pipe12);
-        endOfPipeList.add(EoP2pipe12);
-
-        //connecting pipe1 to the spring
-            s1.connectablePipes.add(Pipe1);
-            EoP1pipe1.connectToElement(s1);
-            addPipe(Pipe1);
-
-
-            //connecting pipe4 to the spring
-            s1.connectablePipes.add(Pipe4);
-            EoP1pipe4.connectToElement(s1);
-            addPipe(Pipe4);
-
-
-            //connecting pipe1 to pump1
-            Pump1.connectablePipes.add(Pipe1);
-            Pump1.inPipe = Pipe1;
-            EoP2pipe1.connectToElement(Pump1);
-            addPump(Pump1);
-
-
-            //connecting pipe4 to pump3
-            Pump3.connectablePipes.add(Pipe4);
-            Pump3.inPipe = Pipe4;
-            EoP2pipe4.connectToElement(Pump3);
-            addPump(Pump3);
-
-
-            //connecting pipe5 to pump1 and pump3
-            Pump1.connectablePipes.add(Pipe5);
-            Pump3.connectablePipes.add(Pipe5);
-            EoP1pipe5.connectToElement(Pump1);
-            EoP2pipe5.connectToElement(Pump3);
-            addPipe(Pipe5);
-
-
-
-            //connecting pipe2 to pump1
-            Pump1.connectablePipes.add(Pipe2);
-            Pump1.outPipe = Pipe2;
-            EoP1pipe2.connectToElement(Pump1);
-            addPipe(Pipe2);
-
-
-            //connecting pipe7 to pump3
-            Pump3.connectablePipes.add(Pipe7);
-            Pump3.outPipe = Pipe7;
-            EoP1pipe7.connectToElement(Pump3);
-            addPipe(Pipe7);
-
-
-            //connecting pipe2 to pump2
-            Pump2.connectablePipes.add(Pipe2);
-            Pump2.inPipe = Pipe2;
-            EoP2pipe2.connectToElement(Pump2);
-            addPump(Pump2);
-
-
-            //connecting pipe7 to pump4
-            Pump4.connectablePipes.add(Pipe7);
-            Pump4.inPipe = Pipe7;
-            EoP2pipe7.connectToElement(Pump4);
-            addPump(Pump4);
-
-
-            //connecting pipe6 to pump2 and pump4
-            Pump2.connectablePipes.add(Pipe6);
-            Pump4.connectablePipes.add(Pipe6);
-            EoP1pipe6.connectToElement(Pump2);
-            addPipe(Pipe6);
-
-
-
-            //connecting pipe3 to pump2
-            Pump2.connectablePipes.add(Pipe3);
-            EoP1pipe3.connectToElement(Pump2);
-            Pump2.outPipe = Pipe3;
-            addPipe(Pipe3);
-
-            //connecting pipe8 to pump4
-            Pump4.connectablePipes.add(Pipe8);
-            EoP1pipe8.connectToElement(Pump4);
-            Pump4.outPipe = Pipe8;
-            addPipe(Pipe8);
-
-            // connecting pipe9 to pump5 and pump4
-            Pump4.connectablePipes.add(Pipe9);
-            Pump5.connectablePipes.add(Pipe9);
-            EoP1pipe9.connectToElement(Pump4);
-            EoP2pipe9.connectToElement(Pump5);
-            Pump5.inPipe = Pipe9;
-            addPipe(Pipe9);
-            addPump(Pump5);
-
-
-            //connecting pipe10 to pump6 and pump2
-            Pump6.connectablePipes.add(Pipe10);
-            Pump2.connectablePipes.add(Pipe10);
-            EoP1pipe10.connectToElement(Pump6);
-            EoP2pipe10.connectToElement(Pump2);
-            Pump6.inPipe = Pipe10;
-            addPipe(Pipe10);
-            addPump(Pump6);
-
-            //connecting pipe11 to pump 6 and pump 8
-            Pump6.connectablePipes.add(Pipe11);
-            EoP1pipe11.connectToElement(Pump6);
-            Pump6.outPipe = Pipe11;
-            pump8.connectablePipes.add(Pipe11);
-            EoP2pipe11.connectToElement(pump8);
-            pump8.inPipe = Pipe11;
-            addPipe(Pipe11);
-            addPump(pump8);
-
-            //connecting pipe12 to pump 5 and pump 7
-            Pump5.connectablePipes.add(pipe12);
-            EoP1pipe12.connectToElement(Pump5);
-            Pump5.outPipe = pipe12;
-            Pump7.connectablePipes.add(pipe12);
-            EoP2pipe12.connectToElement(Pump7);
-            Pump7.inPipe = pipe12;
-            addPipe(pipe12);
-            addPump(Pump7);
-
-            //connecting pipe3 and pipe8 to the cistern
-            cistern.connectablePipes.add(Pipe3);
-            cistern.connectablePipes.add(Pipe8);
-            EoP2pipe3.connectToElement(cistern);
-            EoP2pipe8.connectToElement(cistern);
-            addCistern(cistern);
-        System.out.println("The game's elements have been initialized successfully.");
+        GameLog.log(GameEvent.Kind.GAME, "Initializing the game...");
+        MapLoader loader = new MapLoader();
+        try {
+            loader.load(this, Path.of(System.getProperty(MAP_PROPERTY, DEFAULT_MAP)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        GameLog.log(GameEvent.Kind.GAME, "{}", loader.describe());
+        GameLog.log(GameEvent.Kind.GAME, "The game's elements have been initialized successfully.");
+    }
+
+    /**
+     * Removes all elements from the map and resets the scores, so that a new map can be built.
+     */
+    void clearMap() {
+        clearMap(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Removes all elements from the map and resets the scores, making room for a map of the given size.
+     * The pending breakdowns of the removed pumps and the manufacturing of the removed cisterns are
+     * cancelled, so that they do not act on the new map.
+     */
+    void clearMap(int springs, int cisterns, int pumps, int pipes, int ends) {
+        if (pumpList != null) {
+            for (Pump pump : pumpList) {
+                pump.cancelBreakdown();
+            }
+        }
+        if (cisternList != null) {
+            for (Cistern cistern : cisternList) {
+                cistern.cancelManufacturing();
+            }
+        }
+        elementList = new IndexedList<>(springs + cisterns + pumps + pipes);
+        pipeList = new IndexedList<>(pipes);
+        pumpList = new IndexedList<>(pumps);
+        springList = new IndexedList<>(springs);
+        cisternList = new IndexedList<>(cisterns);
+        endOfPipeList = new IndexedList<>(ends);
+        elementIndex.clear();
+        endOfPipeIndex.clear();
+        scores.reset();
+        topologyChanged();
+    }
+
+    /**
+     * Places the Plumbers on a spring and the Saboteurs on a cistern, side by side along a diagonal.
+     * Does nothing if the players have not been configured.
+     *
+     * @param spring         the spring the Plumbers start on
+     * @param plumberOffset  the distance of the first Plumber from the top left corner of the spring
+     * @param cistern        the cistern the Saboteurs start on
+     * @param saboteurOffset the distance of the first Saboteur from the top left corner of the cistern
+     */
+    void placePlayers(Spring spring, int plumberOffset, Cistern cistern, int saboteurOffset) {
+        if (players == null) {
+            return;
+        }
         for (int i = 0; i < saboteurs.length; i++) {
             Saboteur s = saboteurs[i];
             s.currentElement = cistern;
-            int x = 1250 + 50 * i;
-            int y = 350 + 50 * i;
+            int x = cistern.getPosition().x + saboteurOffset + 50 * i;
+            int y = cistern.getPosition().y + saboteurOffset + 50 * i;
             s.setPosition(new Point(x, y));
         }
 
         for (int i = 0; i < plumbers.length; i++) {
             Plumber p = plumbers[i];
-            p.currentElement = s1;
-            int x = 150 + 50 * i;
-            int y = 400 + 50 * i;
+            p.currentElement = spring;
+            int x = spring.getPosition().x + plumberOffset + 50 * i;
+            int y = spring.getPosition().y + plumberOffset + 50 * i;
             p.setPosition(new Point(x, y));
         }
-        startGame();
     }
 
     /**
@@ -342,32 +350,7 @@ public class Game {
      * @author Basel Al-Raoush
      */
     public void startGame() {
-        Thread gameThread = new Thread(() -> {
-            timer = new Timer();
-            timer.startGameTimer();
-            System.out.println("The game and timer have started!");
-
-            while (!timer.isGameOver()) {
-                int elementListSize = elementList.size();
-                int i = 0;
-                Player currentPlayer = players[currentPlayerIndex];
-                currentPlayer.takeTurn(this);
-                for (Element e : elementList) {
-                    i++;
-                    e.update();
-                    if (i == elementListSize) { // DO NOT CHANGE THIS, VERY IMPORTANT - MAJED.
-                        break;
-                    }
-                }
-                currentPlayerIndex = (currentPlayerIndex + 1) % players.length;
-            }
-
-            SwingUtilities.invokeLater(() -> {
-                endGame();
-            });
-        });
-
-        gameThread.start();  // Start the game logic in a new thread
+        engine.start();
     }
 
     /**
@@ -376,7 +359,7 @@ public class Game {
      * which team (Saboteurs or Plumbers) wins the game based on the comparison between leaked and collected water.
      */
     public void endGame() {
-        System.out.println("The timer has stopped, and the game has ended. The results are being evaluated...");
+        GameLog.log(GameEvent.Kind.GAME, "The timer has stopped, and the game has ended. The results are being evaluated...");
         determineWinner();
     }
 
@@ -389,6 +372,25 @@ public class Game {
     public void addPipe(Pipe pipe) {
         elementList.add(pipe);
         pipeList.add(pipe);
+        indexElement(pipe);
+        topologyChanged(pipe);
+    }
+
+    /**
+     * Replaces a pipe of the game with another one, which takes its place in the pipe list. The new pipe
+     * is added to the end of the element list like any other element.
+     *
+     * @param pipe        the pipe to be removed
+     * @param replacement the pipe to be added in its place
+     */
+    public void replacePipe(Pipe pipe, Pipe replacement) {
+        pipeList.set(pipeList.indexOf(pipe), replacement);
+        elementList.remove(pipe);
+        elementIndex.remove(pipe);
+        elementRemoved(pipe);
+        elementList.add(replacement);
+        indexElement(replacement);
+        topologyChanged(replacement);
     }
 
     /**
@@ -400,6 +402,8 @@ public class Game {
     public void addPump(Pump pump) {
         elementList.add(pump);
         pumpList.add(pump);
+        indexElement(pump);
+        topologyChanged(pump);
     }
 
     /**
@@ -411,6 +415,8 @@ public class Game {
     public void addCistern(Cistern c) {
         elementList.add(c);
         cisternList.add(c);
+        indexElement(c);
+        topologyChanged(c);
     }
 
     /**
@@ -422,6 +428,8 @@ public class Game {
     public void addSpring(Spring s) {
         elementList.add(s);
         springList.add(s);
+        indexElement(s);
+        topologyChanged(s);
     }
 
     /**
@@ -429,50 +437,93 @@ public class Game {
      * If the leaked water was greater, the Saboteurs win the game. Otherwise, the Plumbers win.
      */
     public void determineWinner() {
-        int waterLeaked = calculateLeakedWater();
-        int waterCollected = calculateCollectedWater();
+        int waterLeaked;
+        int waterCollected;
+        synchronized (this) {
+            waterLeaked = calculateLeakedWater();
+            waterCollected = calculateCollectedWater();
+        }
 
-        SwingUtilities.invokeLater(() -> {
-            EndGameGUI endGameGUI = new EndGameGUI(waterCollected, waterLeaked);
-            endGameGUI.setVisible(true);
-        });
+        engine.fireGameEnded(waterCollected, waterLeaked);
     }
 
     /**
      * method to calculate the amount of water leaked from the pipes during the entire game.
      */
     public int calculateLeakedWater() {
-        int sum = 0;
-        for (Pipe pipe : pipeList) {
-            sum += pipe.leakedAmount;
-        }
-        gameScore[1] = sum;
-        return sum;
+        return (int) scores.getLeaked();
     }
 
     /**
      * method to calculate the amount of water collected by the cistern during the entire game.
      */
     public int calculateCollectedWater() {
-        int sum = 0;
-        for (Cistern cistern : cisternList) {
-            sum += cistern.getWaterLevel();
-        }
-        gameScore[0] = sum;
-        return sum;
+        return (int) scores.getCollected();
+    }
+
+    /**
+     * Adds an end of a pipe to the map.
+     *
+     * @param end the end of pipe to be added
+     */
+    public void addEndOfPipe(EndOfPipe end) {
+        endOfPipeList.add(end);
+        endOfPipeIndex.add(end, end.getPosition().x, end.getPosition().y, end.width, end.height);
+        engine.fireEndOfPipeChanged(end);
+    }
+
+    /**
+     * Removes an end of a pipe from the map.
+     *
+     * @param end the end of pipe to be removed
+     */
+    public void removeEndOfPipe(EndOfPipe end) {
+        endOfPipeList.remove(end);
+        endOfPipeIndex.remove(end);
+        engine.fireEndOfPipeChanged(end);
+    }
+
+    private void indexElement(Element e) {
+        elementIndex.add(e, e.getPosition().x, e.getPosition().y, e.width, e.height);
+    }
+
+    /**
+     * Finds the element at the given point of the map. Where elements overlap, the one that comes first in
+     * {@link #elementList} is returned.
+     *
+     * @return the element, or null if there is none at the point
+     */
+    public Element elementAt(int x, int y) {
+        return elementIndex.itemAt(x, y);
+    }
+
+    /**
+     * Finds the end of a pipe at the given point of the map. Where ends overlap, the one that comes first in
+     * {@link #endOfPipeList} is returned.
+     *
+     * @return the end of pipe, or null if there is none at the point
+     */
+    public EndOfPipe endOfPipeAt(int x, int y) {
+        return endOfPipeIndex.itemAt(x, y);
     }
 
     public void removeCistern(Cistern cistern) {
         cisternList.remove(cistern);
         elementList.remove(cistern);
+        elementIndex.remove(cistern);
+        elementRemoved(cistern);
     }
     public void removePump(Pump pump) {
         pumpList.remove(pump);
         elementList.remove(pump);
+        elementIndex.remove(pump);
+        elementRemoved(pump);
     }
     public void removePipe(Pipe pipe) {
         pipeList.remove(pipe);
         elementList.remove(pipe);
+        elementIndex.remove(pipe);
+        elementRemoved(pipe);
     }
 
 }
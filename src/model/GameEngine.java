@@ -0,0 +1,630 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the game loop of a {@link Game}: players take their turns one after the other, while a
+ * fixed-rate simulation clock moves water through the elements of the pipe system independently
+ * of the turns. The engine does not depend on Swing; user interfaces subscribe to it as
+ * {@link GameListener}s. Without listeners it can be stepped directly via {@link #runHeadless(int)},
+ * e.g. for balance testing on a server.
+ * <p>
+ * Ticks and player actions both lock on the {@link Game} instance, so they never interleave.
+ */
+public class GameEngine {
+    /**
+     * The default number of ticks per second, which can be overridden with the {@code pipes.tickRate}
+     * system property.
+     */
+    public static final int DEFAULT_TICK_RATE = 20;
+
+    private final Game game;
+    private final List<GameListener> listeners = new CopyOnWriteArrayList<>();
+    private int tickRate = Integer.getInteger("pipes.tickRate", DEFAULT_TICK_RATE);
+    private ScheduledExecutorService clock;
+    private volatile long tickCount = 0;
+    private volatile long clockStartTime;
+    private boolean compactMode = false;
+    private boolean doubleBuffered = false;
+    private FlowNetwork network;
+    private NetworkComponents components;
+    private int componentsVersion;
+    private boolean incremental = true;
+    private boolean parallel = true;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final TimingWheel turnWheel = new TimingWheel();
+    private volatile int touchedLastTick = 0;
+    private volatile long touchedTotal = 0;
+    private final EngineMetrics metrics = new EngineMetrics();
+    /**
+     * Passes the changes of every element of the game on to the listeners of the engine.
+     */
+    private final ElementListener elementObserver = this::fireElementChanged;
+
+    /**
+     * Creates an engine for the given game. The game is not started until {@link #start()}
+     * or {@link #runHeadless(int)} is called.
+     *
+     * @param game the game whose loop this engine runs
+     */
+    public GameEngine(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Returns the latency histograms of this engine's ticks and turns, and of the repaints of the map.
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the number of ticks per second of the simulation clock. Takes effect the next time the clock is started.
+     *
+     * @param tickRate the number of ticks per second, at least 1
+     */
+    public void setTickRate(int tickRate) {
+        if (tickRate < 1) {
+            throw new IllegalArgumentException("The tick rate must be at least 1, was " + tickRate);
+        }
+        this.tickRate = tickRate;
+    }
+
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * Returns the number of ticks run since the engine was created.
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Returns the number of ticks per second that the simulation clock actually achieved since it was started,
+     * or 0 if it is not running.
+     */
+    public double getMeasuredTickRate() {
+        if (clock == null) {
+            return 0;
+        }
+        double seconds = (System.nanoTime() - clockStartTime) / 1e9;
+        return seconds > 0 ? tickCount / seconds : 0;
+    }
+
+    /**
+     * Switches between updating the element objects one by one and stepping a compact {@link FlowNetwork}
+     * compiled from them. In compact mode the elements are views over the network, which is recompiled
+     * whenever the topology of the game changes.
+     *
+     * @param compactMode true to step a compact network, false to update the element objects
+     */
+    public void setCompactMode(boolean compactMode) {
+        synchronized (game) {
+            this.compactMode = compactMode;
+            releaseNetworkIfUnused();
+        }
+    }
+
+    public boolean isCompactMode() {
+        return compactMode;
+    }
+
+    /**
+     * Switches between moving water in place, where an element sees the changes made by the elements
+     * updated before it in the same tick, and double buffering, where every element's new water level is
+     * computed from the levels of the previous tick with {@link FlowNetwork#stepBuffered}. Double buffered
+     * ticks give the same result no matter how many threads they are split between, but water only travels
+     * one link per tick. They always step a compact network.
+     *
+     * @param doubleBuffered true to compute new water levels from the previous tick only
+     */
+    public void setDoubleBuffered(boolean doubleBuffered) {
+        synchronized (game) {
+            this.doubleBuffered = doubleBuffered;
+            releaseNetworkIfUnused();
+        }
+    }
+
+    public boolean isDoubleBuffered() {
+        return doubleBuffered;
+    }
+
+    /**
+     * Hands the state kept in the compact network back to the elements if no mode needs it anymore.
+     */
+    private void releaseNetworkIfUnused() {
+        if (!compactMode && !doubleBuffered && network != null) {
+            network.detach();
+            network = null;
+            // the network moved water without notifying the trackers
+            activateAll();
+        }
+    }
+
+    /**
+     * Switches between updating only the elements whose state or neighbourhood changed since they were last
+     * updated, and updating every element on every tick. Only affects the object mode.
+     *
+     * @param incremental true to skip quiescent elements, false to update all of them
+     */
+    public void setIncremental(boolean incremental) {
+        synchronized (game) {
+            this.incremental = incremental;
+            activateAll();
+        }
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Returns the number of elements updated on the last tick in object mode.
+     */
+    public int getTouchedLastTick() {
+        return touchedLastTick;
+    }
+
+    /**
+     * Returns the number of element updates done in object mode since the engine was created.
+     */
+    public long getTouchedTotal() {
+        return touchedTotal;
+    }
+
+    /**
+     * Returns the number of elements that will be updated on the next tick in object mode.
+     */
+    public int getActiveCount() {
+        synchronized (game) {
+            int count = 0;
+            if (components != null) {
+                for (NetworkComponents.Component c : components.components()) {
+                    count += c.tracker.getActiveCount();
+                }
+            }
+            return count;
+        }
+    }
+
+    private void activateAll() {
+        if (components != null) {
+            for (NetworkComponents.Component c : components.components()) {
+                c.tracker.activateAll();
+            }
+        }
+    }
+
+    /**
+     * Switches between updating independent components of the pipe system at the same time on a
+     * {@link ForkJoinPool}, and updating them one after the other on the ticking thread. Both give
+     * the same results. Only affects the object mode.
+     *
+     * @param parallel true to update components in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Sets the pool that independent components are updated on, the common pool by default.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the number of independent components of the pipe system.
+     */
+    public int getComponentCount() {
+        return currentComponents().components().size();
+    }
+
+    /**
+     * Returns the elements of the game in the order they are updated: component by component, each in
+     * {@link PropagationOrder}.
+     */
+    public List<Element> propagationOrder() {
+        return currentComponents().order();
+    }
+
+    /**
+     * Returns the components of the pipe system, rebuilding those around the elements whose
+     * connections changed since they were last built.
+     */
+    private NetworkComponents currentComponents() {
+        synchronized (game) {
+            if (components == null || componentsVersion != game.getTopologyVersion()) {
+                TopologyChangeEvent event = new TopologyChangeEvent();
+                event.begin();
+                componentsVersion = game.getTopologyVersion();
+                boolean whole = components == null || game.isWholeTopologyChanged();
+                if (event.isEnabled()) {
+                    event.whole = whole;
+                    event.changedElements = whole ? game.elementList.size() : game.getChangedElements().size();
+                    event.removedElements = game.getRemovedElements().size();
+                    event.elements = TopologyChangeEvent.names(whole ? game.elementList : game.getChangedElements());
+                }
+                if (whole) {
+                    components = new NetworkComponents(game.elementList);
+                    registerElements(game.elementList);
+                } else {
+                    components.rebuild(game.getChangedElements(), game.getRemovedElements());
+                    registerElements(game.getChangedElements());
+                    for (Element e : game.getRemovedElements()) {
+                        if (e instanceof Pump pump) {
+                            pump.cancelBreakdown();
+                        } else if (e instanceof Cistern cistern) {
+                            cistern.cancelManufacturing();
+                        }
+                    }
+                }
+                game.clearTopologyChanges();
+                if (network != null) {
+                    network.detach();
+                    network = null;
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.components = components.components().size();
+                    event.commit();
+                }
+            }
+            return components;
+        }
+    }
+
+    /**
+     * Returns the elements of every component of the pipe system, in propagation order.
+     */
+    List<List<Element>> componentOrders() {
+        synchronized (game) {
+            List<List<Element>> orders = new ArrayList<>();
+            for (NetworkComponents.Component c : currentComponents().components()) {
+                orders.add(c.order);
+            }
+            return orders;
+        }
+    }
+
+    /**
+     * Uses the given partition of the elements of the game into components, instead of computing it
+     * again, for a map that was loaded together with its partition.
+     *
+     * @param orders the elements of every component, in propagation order
+     */
+    void useComponents(List<List<Element>> orders) {
+        synchronized (game) {
+            components = NetworkComponents.of(orders);
+            componentsVersion = game.getTopologyVersion();
+            registerElements(game.elementList);
+            game.clearTopologyChanges();
+            if (network != null) {
+                network.detach();
+                network = null;
+            }
+        }
+    }
+
+    /**
+     * Lets the given elements count towards the scores of the game, and schedules the breakdowns of the
+     * given pumps and the manufacturing of the given cisterns, unless they have been scheduled before.
+     */
+    private void registerElements(Iterable<Element> elements) {
+        for (Element e : elements) {
+            e.scores = game.scores;
+            e.observer = elementObserver;
+            if (e instanceof Pump pump) {
+                pump.scheduleBreakdown(turnWheel);
+            } else if (e instanceof Cistern cistern) {
+                cistern.scheduleManufacturing(turnWheel);
+            }
+        }
+    }
+
+    /**
+     * Returns the wheel that advances by a tick at the end of every turn, on which pump breakdowns and
+     * cistern manufacturing are scheduled. It may only be used while holding the lock of the game.
+     */
+    public TimingWheel getTurnWheel() {
+        return turnWheel;
+    }
+
+    /**
+     * Returns the compact network for the current topology, compiling and attaching a new one if needed.
+     */
+    private FlowNetwork currentNetwork() {
+        List<Element> elements = propagationOrder();
+        if (network == null) {
+            network = FlowNetwork.compile(elements);
+            network.setScores(game.scores);
+            network.attach();
+        }
+        return network;
+    }
+
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies all listeners that the game state has changed.
+     */
+    public void fireGameChanged() {
+        for (GameListener listener : listeners) {
+            listener.gameChanged();
+        }
+    }
+
+    /**
+     * Notifies all listeners that the given element has changed, or that the whole map has if it is null.
+     */
+    public void fireElementChanged(Element element, ElementChange change) {
+        for (GameListener listener : listeners) {
+            listener.elementChanged(element, change);
+        }
+    }
+
+    /**
+     * Notifies all listeners that the given end of pipe was added to or removed from the map.
+     */
+    public void fireEndOfPipeChanged(EndOfPipe end) {
+        for (GameListener listener : listeners) {
+            listener.endOfPipeChanged(end);
+        }
+    }
+
+    /**
+     * Notifies all listeners that the given elements were added to or removed from the map, or that
+     * their connections changed, and has the elements report their own changes from now on, even before
+     * the next tick registers them.
+     */
+    void elementsChanged(Element... elements) {
+        for (Element e : elements) {
+            if (e != null) {
+                e.observer = elementObserver;
+                fireElementChanged(e, ElementChange.CONNECTIONS);
+            }
+        }
+    }
+
+    /**
+     * Notifies all listeners that the game has ended with the given scores.
+     */
+    public void fireGameEnded(int waterCollected, int waterLeaked) {
+        for (GameListener listener : listeners) {
+            listener.gameEnded(waterCollected, waterLeaked);
+        }
+    }
+
+    /**
+     * Updates the elements of the pipe system once, in propagation order unless ticks are double buffered.
+     * In incremental mode, elements whose update would not change anything are skipped.
+     */
+    public void tick() {
+        synchronized (game) {
+            long start = System.nanoTime();
+            TickEvent event = new TickEvent();
+            event.begin();
+            int touched = -1;
+            if (doubleBuffered) {
+                currentNetwork().stepBuffered(parallel ? pool : null);
+            } else if (compactMode) {
+                currentNetwork().step();
+            } else {
+                NetworkComponents current = currentComponents();
+                List<NetworkComponents.Component> parts = current.components();
+                EngineMetrics timing = metrics.isElementTiming() ? metrics : null;
+                if (parallel && parts.size() > 1 && current.weights()[parts.size()] >= ComponentTick.THRESHOLD) {
+                    touched = pool.invoke(new ComponentTick(parts, current.weights(), 0, parts.size(), incremental, timing));
+                } else {
+                    touched = 0;
+                    for (NetworkComponents.Component c : parts) {
+                        touched += c.update(incremental, timing);
+                    }
+                }
+                touchedLastTick = touched;
+                touchedTotal += touched;
+            }
+            tickCount++;
+            metrics.tick.recordSince(start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.tick = tickCount;
+                event.mode = doubleBuffered ? "double buffered" : compactMode ? "compact" : "elements";
+                event.elementsUpdated = touched;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Updates a range of components, splitting it between threads while it holds enough elements
+     * to be worth it.
+     */
+    @SuppressWarnings("serial") // tasks are never serialized
+    private static final class ComponentTick extends RecursiveTask<Integer> {
+        /**
+         * The number of elements below which a range of components is updated on a single thread.
+         */
+        static final int THRESHOLD = 2048;
+
+        private final List<NetworkComponents.Component> parts;
+        private final int[] weights;
+        private final int from;
+        private final int to;
+        private final boolean incremental;
+        private final EngineMetrics timing;
+
+        ComponentTick(List<NetworkComponents.Component> parts, int[] weights, int from, int to, boolean incremental,
+                      EngineMetrics timing) {
+            this.parts = parts;
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+            this.incremental = incremental;
+            this.timing = timing;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > 1 && weights[to] - weights[from] >= THRESHOLD) {
+                // split where half of the elements are on either side
+                int half = (weights[from] + weights[to]) / 2;
+                int mid = from + 1;
+                while (mid < to - 1 && weights[mid] < half) {
+                    mid++;
+                }
+                ComponentTick left = new ComponentTick(parts, weights, from, mid, incremental, timing);
+                left.fork();
+                int touched = new ComponentTick(parts, weights, mid, to, incremental, timing).compute();
+                return touched + left.join();
+            }
+            int touched = 0;
+            for (int i = from; i < to; i++) {
+                touched += parts.get(i).update(incremental, timing);
+            }
+            return touched;
+        }
+    }
+
+    /**
+     * Runs the events due at the end of this turn, such as pump breakdowns, and passes the turn on to the
+     * next player.
+     */
+    private void endTurn() {
+        synchronized (game) {
+            // pumps and cisterns added during the turn start counting down from this turn on
+            currentComponents();
+            turnWheel.advance();
+            game.currentPlayerIndex = (game.currentPlayerIndex + 1) % game.players.length;
+            game.turnStart = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Lets the current player take their turn and records how long it took.
+     */
+    private void takeTurn() {
+        long start = System.nanoTime();
+        game.players[game.currentPlayerIndex].takeTurn(game);
+        metrics.turn.recordSince(start);
+    }
+
+    /**
+     * Lets the current player take their turn, runs a single tick and passes the turn on.
+     * This is the lock-step mode used without the simulation clock.
+     */
+    public void step() {
+        takeTurn();
+        tick();
+        endTurn();
+    }
+
+    /**
+     * Starts the simulation clock, which runs {@link #tick()} at the configured tick rate on its own thread.
+     */
+    public synchronized void startClock() {
+        if (clock != null) {
+            return;
+        }
+        clock = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "simulation-clock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tickCount = 0;
+        clockStartTime = System.nanoTime();
+        long period = TimeUnit.SECONDS.toNanos(1) / tickRate;
+        clock.scheduleAtFixedRate(this::clockTick, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs a tick on the clock thread. An exception would silently cancel all further ticks,
+     * so it is reported and the clock keeps running.
+     */
+    private void clockTick() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the simulation clock and waits for a running tick to finish.
+     */
+    public synchronized void stopClock() {
+        if (clock == null) {
+            return;
+        }
+        clock.shutdown();
+        try {
+            clock.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        clock = null;
+    }
+
+    /**
+     * Starts the game timer and the simulation clock, and runs the players' turns on a new thread
+     * until the timer runs out, after which the game is ended. The {@linkplain #getMetrics() metrics}
+     * of the game are registered with JMX, and dumped to the standard error while the game runs if the
+     * {@value EngineMetrics#DUMP_PERIOD_PROPERTY} system property gives a period.
+     */
+    public void start() {
+        Thread gameThread = new Thread(() -> {
+            game.timer = new Timer();
+            game.timer.startGameTimer();
+            GameLog.log(GameEvent.Kind.GAME, "The game and timer have started!");
+            metrics.registerMBeans();
+            long dumpPeriod = Long.getLong(EngineMetrics.DUMP_PERIOD_PROPERTY, 0);
+            if (dumpPeriod > 0) {
+                metrics.startDump(System.err, dumpPeriod, TimeUnit.SECONDS);
+            }
+            startClock();
+            game.turnStart = System.currentTimeMillis();
+
+            while (!game.timer.isGameOver()) {
+                takeTurn();
+                endTurn();
+            }
+            stopClock();
+            metrics.stopDump();
+            game.endGame();
+        });
+
+        gameThread.start();  // Start the game logic in a new thread
+    }
+
+    /**
+     * Runs the given number of steps on the calling thread, without the game timer or the simulation clock.
+     * Players' turns end as soon as their turn duration has elapsed, so this is typically used
+     * with {@link Game#turnDuration} set to zero.
+     *
+     * @param steps the number of turns to play
+     */
+    public void runHeadless(int steps) {
+        for (int i = 0; i < steps; i++) {
+            step();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package model;
+
+/**
+ * Something that happened in a game, as delivered to the sinks of the {@link GameLog}.
+ *
+ * @param timeMillis the time the event happened, as given by {@link System#currentTimeMillis()}
+ * @param kind       what kind of event it is
+ * @param text       the message describing the event, as shown in the console
+ */
+public record GameEvent(long timeMillis, Kind kind, String text) {
+    /**
+     * The kinds of events, so that sinks can pick the ones they show.
+     */
+    public enum Kind {
+        /**
+         * The game was set up, started or ended.
+         */
+        GAME,
+        /**
+         * A player took an action that changed the game, such as moving or puncturing a pipe.
+         */
+        ACTION,
+        /**
+         * The game tells the current player what they chose or what to do next.
+         */
+        PROMPT,
+        /**
+         * An action could not be taken, or the input was not valid.
+         */
+        REJECTED,
+        /**
+         * An element changed by itself, such as a pump breaking down or a cistern manufacturing a pump.
+         */
+        ELEMENT
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,41 @@
+package model;
+
+/**
+ * Receives notifications from a {@link GameEngine}. The Swing map is one such subscriber,
+ * but the engine runs just as well without any, which is how headless simulations are driven.
+ */
+public interface GameListener {
+    /**
+     * Called whenever the state of the game changed in a way that should be shown to the players.
+     * May be called from any thread.
+     */
+    void gameChanged();
+
+    /**
+     * Called whenever an element changed in a way that may change how it is drawn, or was added to or
+     * removed from the map, so that only the part of the map around it needs to be drawn again. Called
+     * with a null element if the whole map changed. May be called from any thread, often many times per
+     * tick, while holding the lock of the game.
+     *
+     * @param element the element that changed, or null
+     * @param change  what changed
+     */
+    default void elementChanged(Element element, ElementChange change) {}
+
+    /**
+     * Called whenever an end of a pipe was added to or removed from the map. May be called from any
+     * thread.
+     *
+     * @param end the end of pipe
+     */
+    default void endOfPipeChanged(EndOfPipe end) {}
+
+    /**
+     * Called once when the game is over and the final scores are known.
+     * May be called from any thread.
+     *
+     * @param waterCollected the amount of water collected by the cisterns
+     * @param waterLeaked    the amount of water leaked from the pipes
+     */
+    void gameEnded(int waterCollected, int waterLeaked);
+}
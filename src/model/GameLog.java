@@ -0,0 +1,350 @@
+package model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The log of everything that happens in the game, written by a background thread so that logging never
+ * blocks the thread of the game or the simulation clock.
+ * <p>
+ * Logging an event copies its kind, its message template and its arguments into a slot of a ring
+ * buffer, which takes a compare-and-set and no allocation; any number of threads can log at once.
+ * The writer thread takes the events out of the buffer in the order they were logged, formats their
+ * messages and hands them to every {@link Sink}. If the writer falls so far behind that the buffer is
+ * full, new events are dropped and counted rather than waited for.
+ * <p>
+ * A message template contains a {@code {}} for each of its arguments, which are replaced by the
+ * arguments' string values when the event is written. Arguments should be immutable, such as names,
+ * since they are only read then.
+ * <p>
+ * The game logs to the {@linkplain #shared() shared log}, which writes to the standard output until its
+ * sinks are changed.
+ */
+public final class GameLog {
+    /**
+     * Receives the events of a log, on the writer thread of the log.
+     */
+    public interface Sink {
+        void accept(GameEvent event);
+
+        /**
+         * Called after a batch of events has been passed to the sink, e.g. to flush a file.
+         */
+        default void flush() {}
+    }
+
+    /**
+     * Writes the text of every event as a line to the standard output, whichever stream it is at the time.
+     */
+    public static final Sink STANDARD_OUTPUT = event -> System.out.println(event.text());
+
+    /**
+     * The default number of events the buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final GameLog SHARED = new GameLog(DEFAULT_CAPACITY, STANDARD_OUTPUT);
+
+    /**
+     * A place in the ring buffer. An event is being written into it while its sequence is behind that of
+     * the event, and can be read once the sequence matches.
+     */
+    private static final class Slot {
+        volatile long sequence;
+        long timeMillis;
+        GameEvent.Kind kind;
+        String template;
+        int argumentCount;
+        Object a0;
+        Object a1;
+        Object a2;
+        Object[] more;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    /**
+     * The sequence of the next event to be logged.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * The sequence of the next event to be written, advanced by the writer thread only.
+     */
+    private volatile long tail;
+    /**
+     * The sequence of the next event to be written once the sinks have been flushed.
+     */
+    private volatile long delivered;
+    /**
+     * Notified by the writer thread whenever {@link #delivered} advances, for threads waiting in
+     * {@link #flush(long, TimeUnit)}.
+     */
+    private final Object deliveredLock = new Object();
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<Sink> sinks = new CopyOnWriteArrayList<>();
+    private final StringBuilder text = new StringBuilder();
+    private volatile Thread writer;
+    /**
+     * Set by the writer thread while it is about to sleep or sleeping, so that logging an event wakes it.
+     */
+    private volatile boolean idle;
+
+    /**
+     * Creates a log whose buffer holds the given number of events.
+     *
+     * @param capacity the number of events, a power of two
+     * @param sinks    the sinks to write to
+     */
+    public GameLog(int capacity, Sink... sinks) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity of the log must be a power of two, was " + capacity);
+        }
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        mask = capacity - 1;
+        this.sinks.addAll(List.of(sinks));
+    }
+
+    /**
+     * Returns the log the game writes to.
+     */
+    public static GameLog shared() {
+        return SHARED;
+    }
+
+    public void addSink(Sink sink) {
+        sinks.add(sink);
+    }
+
+    public void removeSink(Sink sink) {
+        sinks.remove(sink);
+    }
+
+    public List<Sink> getSinks() {
+        return List.copyOf(sinks);
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Logs an event to the shared log.
+     */
+    public static void log(GameEvent.Kind kind, String message) {
+        SHARED.publish(kind, message, 0, null, null, null, null);
+    }
+
+    /**
+     * Logs an event with a message template and its argument to the shared log.
+     */
+    public static void log(GameEvent.Kind kind, String template, Object a0) {
+        SHARED.publish(kind, template, 1, a0, null, null, null);
+    }
+
+    /**
+     * Logs an event with a message template and its arguments to the shared log.
+     */
+    public static void log(GameEvent.Kind kind, String template, Object a0, Object a1) {
+        SHARED.publish(kind, template, 2, a0, a1, null, null);
+    }
+
+    /**
+     * Logs an event with a message template and its arguments to the shared log.
+     */
+    public static void log(GameEvent.Kind kind, String template, Object a0, Object a1, Object a2) {
+        SHARED.publish(kind, template, 3, a0, a1, a2, null);
+    }
+
+    /**
+     * Logs an event with a message template and its arguments to the shared log.
+     */
+    public static void log(GameEvent.Kind kind, String template, Object... arguments) {
+        SHARED.publish(kind, template, arguments.length, null, null, null, arguments);
+    }
+
+    /**
+     * Logs an event to this log.
+     */
+    public void event(GameEvent.Kind kind, String message) {
+        publish(kind, message, 0, null, null, null, null);
+    }
+
+    /**
+     * Logs an event with a message template and its arguments to this log.
+     */
+    public void event(GameEvent.Kind kind, String template, Object... arguments) {
+        publish(kind, template, arguments.length, null, null, null, arguments);
+    }
+
+    private void publish(GameEvent.Kind kind, String template, int argumentCount, Object a0, Object a1, Object a2,
+                         Object[] more) {
+        if (sinks.isEmpty()) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.kind = kind;
+        slot.template = template;
+        slot.argumentCount = argumentCount;
+        slot.a0 = a0;
+        slot.a1 = a1;
+        slot.a2 = a2;
+        slot.more = more;
+        slot.sequence = sequence + 1; // publishes the event to the writer
+        Thread thread = writer;
+        if (thread == null) {
+            startWriter();
+        } else if (idle) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        Thread thread = new Thread(this::write, "game-log");
+        thread.setDaemon(true);
+        writer = thread; // before the thread starts, so that it can always be woken once it sleeps
+        thread.start();
+        // write what is left when the virtual machine exits, e.g. at the end of a headless game
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1, TimeUnit.SECONDS), "game-log-flush"));
+    }
+
+    /**
+     * Writes events to the sinks as they are logged, sleeping whenever the buffer is empty until the next
+     * event is logged.
+     */
+    private void write() {
+        while (true) {
+            if (!drain()) {
+                idle = true;
+                // an event published before the flag was seen is found here; one after it unparks the thread
+                if (!drain()) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+            }
+        }
+    }
+
+    /**
+     * Writes all events logged so far.
+     *
+     * @return whether there were any
+     */
+    private boolean drain() {
+        long next = tail;
+        boolean any = false;
+        while (true) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.sequence != next + 1) {
+                break;
+            }
+            GameEvent event = new GameEvent(slot.timeMillis, slot.kind, format(slot));
+            slot.template = null;
+            slot.a0 = slot.a1 = slot.a2 = null;
+            slot.more = null;
+            slot.sequence = next + slots.length; // frees the slot for the event one lap ahead
+            tail = ++next;
+            any = true;
+            for (Sink sink : sinks) {
+                try {
+                    sink.accept(event);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        if (any) {
+            for (Sink sink : sinks) {
+                try {
+                    sink.flush();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            delivered = next;
+            synchronized (deliveredLock) {
+                deliveredLock.notifyAll();
+            }
+        }
+        return any;
+    }
+
+    private String format(Slot slot) {
+        String template = slot.template;
+        if (slot.argumentCount == 0) {
+            return template;
+        }
+        text.setLength(0);
+        int from = 0;
+        for (int i = 0; i < slot.argumentCount; i++) {
+            int at = template.indexOf("{}", from);
+            if (at < 0) {
+                break;
+            }
+            text.append(template, from, at).append(argument(slot, i));
+            from = at + 2;
+        }
+        return text.append(template, from, template.length()).toString();
+    }
+
+    private static Object argument(Slot slot, int i) {
+        if (slot.more != null) {
+            return slot.more[i];
+        }
+        return i == 0 ? slot.a0 : i == 1 ? slot.a1 : slot.a2;
+    }
+
+    /**
+     * Waits until every event logged before the call has been written to the sinks.
+     */
+    public void flush() {
+        flush(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Waits until every event logged before the call has been written to the sinks, or the timeout has passed.
+     *
+     * @return whether the events were written
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = head.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (deliveredLock) {
+            while (delivered < target) {
+                long remaining = deadline - System.nanoTime();
+                if (writer == null || remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(deliveredLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Entry point for running the game without any user interface. It sets up a 2v2 game on the
+ * default map, plays the requested number of turns as fast as possible and reports the
+ * resulting scores and throughput. No Swing classes are loaded, so this can run on servers
+ * for balance and load testing.
+ */
+public class HeadlessMain {
+    /**
+     * Runs a headless game.
+     *
+     * @param args optionally, the number of turns to play (defaults to 10000), {@code --compact}
+     *             to move water with a compact {@link FlowNetwork}, {@code --buffered} to compute
+     *             each tick from the water levels of the previous one, and {@code --elements N} with
+     *             an optional {@code --seed S} to play on a generated map of about N elements,
+     *             and {@code --metrics} to time every element update and print the latency
+     *             histograms of the engine at the end
+     */
+    public static void main(String[] args) {
+        int steps = 10000;
+        boolean compact = false;
+        boolean buffered = false;
+        int elements = 0;
+        long seed = 1;
+        boolean metrics = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--compact")) {
+                compact = true;
+            } else if (arg.equals("--buffered")) {
+                buffered = true;
+            } else if (arg.equals("--elements")) {
+                elements = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--seed")) {
+                seed = Long.parseLong(args[++i]);
+            } else if (arg.equals("--metrics")) {
+                metrics = true;
+            } else {
+                steps = Integer.parseInt(arg);
+            }
+        }
+
+        Game game = new Game();
+        game.turnDuration = 0;
+        game.engine.setCompactMode(compact);
+        game.engine.setDoubleBuffered(buffered);
+        game.engine.getMetrics().setElementTiming(metrics);
+        game.configurePlayers(List.of("Plumber 1", "Saboteur 1", "Plumber 2", "Saboteur 2"),
+                List.of(true, false, true, false));
+        if (elements > 0) {
+            MapGenerator generator = new MapGenerator(seed);
+            generator.setSize(elements);
+            generator.generate(game);
+            System.out.println("Generated a map of " + game.elementList.size() + " elements.");
+        } else {
+            game.initMap();
+        }
+
+        long start = System.nanoTime();
+        game.engine.runHeadless(steps);
+        long elapsed = System.nanoTime() - start;
+        GameLog.shared().flush(); // the events of the game come first
+
+        System.out.println(steps + " turns played in " + elapsed / 1_000_000 + " ms ("
+                + (long) (steps / (elapsed / 1e9)) + " turns per second).");
+        if (!compact && !buffered) {
+            System.out.println("Elements updated per tick: "
+                    + (double) game.engine.getTouchedTotal() / game.engine.getTickCount() + " on average.");
+        }
+        if (metrics) {
+            System.out.print(game.engine.getMetrics().dump());
+        }
+        game.endGame();
+        GameLog.shared().flush();
+        System.out.println("Team Plumbers: " + game.calculateCollectedWater()
+                + " | Team Saboteurs: " + game.calculateLeakedWater());
+    }
+}
@@ -0,0 +1,330 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A list of distinct objects that also knows the position of each of them, so that looking one up,
+ * appending one and removing one take constant time instead of a scan over the list. The elements,
+ * pipes and connections of a game are kept in such lists, so that editing the topology stays cheap
+ * on very large maps.
+ * <p>
+ * Objects are told apart by identity. An object can be in the list at most once: adding it again
+ * does nothing and returns false. Removing an object only marks its slot as empty; the list is
+ * compacted once there are more empty slots than objects, or when it is next accessed by position.
+ * The order of the objects is always kept, like in an {@link java.util.ArrayList}.
+ * <p>
+ * Most elements are connected to only a few pipes, so short lists do without the map of positions
+ * and look objects up by scanning their few slots instead, which keeps large maps small in memory.
+ *
+ * @param <E> the type of the objects in the list
+ */
+public class IndexedList<E> extends AbstractList<E> {
+    private static final Object REMOVED = new Object();
+    /**
+     * The number of slots up to which objects are looked up by scanning the slots.
+     */
+    private static final int SCAN_LIMIT = 8;
+
+    private Object[] slots;
+    /**
+     * The number of slots in use, including the ones of removed objects.
+     */
+    private int used = 0;
+    private int size = 0;
+    /**
+     * The slot of every object, or null while the list is short enough to be scanned.
+     */
+    private Map<Object, Integer> positions;
+
+    public IndexedList() {
+        slots = new Object[4];
+    }
+
+    /**
+     * Creates an empty list with room for the given number of objects.
+     */
+    public IndexedList(int expectedSize) {
+        slots = new Object[Math.max(4, expectedSize)];
+        if (expectedSize > SCAN_LIMIT) {
+            positions = new IdentityHashMap<>(expectedSize);
+        }
+    }
+
+    /**
+     * Creates a list holding the distinct objects of the given collection, in its order.
+     */
+    public IndexedList(Iterable<? extends E> objects) {
+        this();
+        for (E e : objects) {
+            add(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return slotOf(o) >= 0;
+    }
+
+    /**
+     * Appends an object to the list, unless it is already in the list.
+     *
+     * @return true if the object was added
+     */
+    @Override
+    public boolean add(E e) {
+        if (slotOf(e) >= 0) {
+            return false;
+        }
+        if (used == slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(4, used * 2));
+        }
+        slots[used++] = e;
+        if (positions != null) {
+            positions.put(e, used - 1);
+        } else if (used > SCAN_LIMIT) {
+            indexSlots();
+        }
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int slot = slotOf(o);
+        if (slot < 0) {
+            return false;
+        }
+        if (positions != null) {
+            positions.remove(o);
+        }
+        slots[slot] = REMOVED;
+        size--;
+        modCount++;
+        if (slot == used - 1) {
+            used--;
+        }
+        if (used - size > size) {
+            compact();
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size);
+        compact();
+        return (E) slots[index];
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (slotOf(o) < 0) {
+            return -1;
+        }
+        compact();
+        return slotOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    /**
+     * Replaces the object at the given position, keeping the position of all others.
+     *
+     * @throws IllegalArgumentException if the new object is already somewhere else in the list
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E e) {
+        checkIndex(index, size);
+        compact();
+        E previous = (E) slots[index];
+        if (previous == e) {
+            return previous;
+        }
+        int slot = slotOf(e);
+        if (slot >= 0) {
+            throw new IllegalArgumentException("The object is already in the list at position " + slot);
+        }
+        if (positions != null) {
+            positions.remove(previous);
+            positions.put(e, index);
+        }
+        slots[index] = e;
+        return previous;
+    }
+
+    /**
+     * Inserts an object at the given position, unless it is already in the list. This moves all
+     * objects after it, so unlike appending it takes time proportional to the size of the list.
+     */
+    @Override
+    public void add(int index, E e) {
+        checkIndex(index, size + 1);
+        if (slotOf(e) >= 0) {
+            return;
+        }
+        compact();
+        if (used == slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(4, used * 2));
+        }
+        System.arraycopy(slots, index, slots, index + 1, used - index);
+        slots[index] = e;
+        used++;
+        size++;
+        if (positions != null) {
+            for (int i = index; i < used; i++) {
+                positions.put(slots[i], i);
+            }
+        } else if (used > SCAN_LIMIT) {
+            indexSlots();
+        }
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E e = get(index);
+        remove(e);
+        return e;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(slots, 0, used, null);
+        positions = null;
+        used = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        compact();
+        return new Iterator<>() {
+            private int next = skipRemoved(0);
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= used) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = skipRemoved(next + 1);
+                return (E) slots[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                // mark the slot without compacting, so that the positions of the iterator stay valid
+                if (positions != null) {
+                    positions.remove(slots[last]);
+                }
+                slots[last] = REMOVED;
+                size--;
+                modCount++;
+                expectedModCount = modCount;
+                last = -1;
+            }
+        };
+    }
+
+    private int skipRemoved(int slot) {
+        while (slot < used && slots[slot] == REMOVED) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Closes the gaps left by removed objects. This moves objects, so it counts as a modification
+     * for iterators that are still open.
+     */
+    private void compact() {
+        if (used == size) {
+            return;
+        }
+        modCount++;
+        int to = 0;
+        for (int from = 0; from < used; from++) {
+            Object o = slots[from];
+            if (o != REMOVED) {
+                if (to != from) {
+                    slots[to] = o;
+                    if (positions != null) {
+                        positions.put(o, to);
+                    }
+                }
+                to++;
+            }
+        }
+        Arrays.fill(slots, to, used, null);
+        used = to;
+    }
+
+    /**
+     * Returns the slot of the given object, or -1 if it is not in the list.
+     */
+    private int slotOf(Object o) {
+        if (positions != null) {
+            Integer slot = positions.get(o);
+            return slot == null ? -1 : slot;
+        }
+        for (int i = 0; i < used; i++) {
+            if (slots[i] == o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Starts keeping the slot of every object in a map, once the list has grown too long to be scanned.
+     */
+    private void indexSlots() {
+        positions = new IdentityHashMap<>(used * 2);
+        for (int i = 0; i < used; i++) {
+            if (slots[i] != REMOVED) {
+                positions.put(slots[i], i);
+            }
+        }
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + bound);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package model;
+
+/**
+ * The management interface of a {@link LatencyHistogram}, as registered with JMX by
+ * {@link EngineMetrics#registerMBeans()}. Durations are given in microseconds, which is what a
+ * JMX console shows best.
+ */
+public interface LatencyHistogramMXBean {
+    String getName();
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * Forgets all recorded values, e.g. to measure a new phase of the game.
+     */
+    void reset();
+}
@@ -1,7 +1,6 @@
 package model;
 
 import gui.MainMenuGUI;
-import gui.MapGUI;
 
 import java.util.*;
 /**
@@ -0,0 +1,206 @@
+package model;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * Builds maps of any size for the game, laid out on a grid. Springs fill the leftmost column and
+ * cisterns the rightmost one, with columns of pumps in between. The pumps of a row are chained by
+ * horizontal pipes, each pump taking water from the pipe on its left and pushing it into the pipe on
+ * its right, so every row carries water from a spring to a cistern. Vertical pipes link pumps of
+ * neighbouring rows, as spare connections the players can switch the input or output of a pump to.
+ * <p>
+ * The same seed and settings always produce the same map, including the number of connections and
+ * working turns of every pump.
+ */
+public class MapGenerator {
+    /**
+     * The distance between the left edges of two columns, and between the top edges of two rows.
+     */
+    public static final int CELL_SIZE = 300;
+    /**
+     * The width of the springs, pumps and cisterns, and the length of the pipes between them.
+     */
+    private static final int NODE_SIZE = 100;
+    private static final int PIPE_LENGTH = CELL_SIZE - NODE_SIZE;
+    private static final int PIPE_WIDTH = 30;
+
+    private final long seed;
+    private int springs = 1;
+    private int cisterns = 1;
+    private int rows = 2;
+    private int columns = 4;
+    private int minFanOut = 3;
+    private int maxFanOut = 5;
+    private double verticalPipeChance = 0.5;
+
+    /**
+     * Creates a generator for a map of one spring, one cistern and two rows of four pumps.
+     *
+     * @param seed the seed of the random choices made while building the map
+     */
+    public MapGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of springs and cisterns. Each of them is as tall as the rows it is connected to,
+     * so there cannot be more of them than rows.
+     */
+    public void setSources(int springs, int cisterns) {
+        if (springs < 1 || cisterns < 1) {
+            throw new IllegalArgumentException("A map needs at least one spring and one cistern");
+        }
+        this.springs = springs;
+        this.cisterns = cisterns;
+    }
+
+    /**
+     * Sets the number of rows of pumps and the number of pumps in each row.
+     */
+    public void setGrid(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("A map needs at least one row and one column of pumps, was "
+                    + rows + " by " + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Chooses a square grid of pumps so that the map has about the given number of elements in total.
+     * Each pump comes with the horizontal pipe on its left and, on average, half a vertical pipe, so the
+     * grid holds about two fifths of the elements as pumps.
+     */
+    public void setSize(int elements) {
+        int side = Math.max(1, (int) Math.round(Math.sqrt(elements / 2.5)));
+        setGrid(side, side);
+    }
+
+    /**
+     * Sets the range the number of connections of each pump is chosen from. A pump always keeps its
+     * input and output pipe, and is linked to the pumps above and below it only while it has
+     * connections left.
+     */
+    public void setFanOut(int min, int max) {
+        if (min < 3 || max > 5 || min > max) {
+            throw new IllegalArgumentException("The fan-out of a pump must be between 3 and 5, was " + min + " to " + max);
+        }
+        minFanOut = min;
+        maxFanOut = max;
+    }
+
+    /**
+     * Sets the chance that two pumps of neighbouring rows with connections left are linked by a vertical pipe.
+     */
+    public void setVerticalPipeChance(double chance) {
+        verticalPipeChance = chance;
+    }
+
+    /**
+     * Replaces the map of the given game with a generated one and places the players on the first
+     * spring and the first cistern.
+     */
+    public void generate(Game game) {
+        if (springs > rows || cisterns > rows) {
+            throw new IllegalArgumentException("There cannot be more springs or cisterns than rows, was "
+                    + springs + " springs and " + cisterns + " cisterns for " + rows + " rows");
+        }
+        Random rand = new Random(seed);
+        game.clearMap();
+
+        Spring[] springOfRow = new Spring[rows];
+        for (int i = 0; i < springs; i++) {
+            int first = i * rows / springs;
+            int last = (i + 1) * rows / springs - 1;
+            Spring s = new Spring("Spring" + (i + 1), new Point(0, first * CELL_SIZE));
+            s.width = NODE_SIZE;
+            s.height = (last - first) * CELL_SIZE + NODE_SIZE;
+            game.addSpring(s);
+            for (int r = first; r <= last; r++) {
+                springOfRow[r] = s;
+            }
+        }
+
+        Cistern[] cisternOfRow = new Cistern[rows];
+        int cisternX = (columns + 1) * CELL_SIZE;
+        for (int i = 0; i < cisterns; i++) {
+            int first = i * rows / cisterns;
+            int last = (i + 1) * rows / cisterns - 1;
+            Cistern c = new Cistern("Cistern" + (i + 1), new Point(cisternX, first * CELL_SIZE), game);
+            c.width = NODE_SIZE;
+            c.height = (last - first) * CELL_SIZE + NODE_SIZE;
+            for (int r = first; r <= last; r++) {
+                cisternOfRow[r] = c;
+            }
+        }
+
+        Pump[] above = null;
+        int pipes = 0;
+        for (int r = 0; r < rows; r++) {
+            int y = r * CELL_SIZE;
+            Pump[] row = new Pump[columns];
+            Element previous = springOfRow[r];
+            for (int c = 0; c <= columns; c++) {
+                Pipe pipe = new Pipe("Pipe" + (++pipes), new Point(c * CELL_SIZE + NODE_SIZE,
+                        y + (NODE_SIZE - PIPE_WIDTH) / 2), false, PIPE_LENGTH, PIPE_WIDTH);
+                EndOfPipe start = new EndOfPipe(pipe, true);
+                EndOfPipe end = new EndOfPipe(pipe, false);
+                game.addEndOfPipe(start);
+                game.addEndOfPipe(end);
+                connect(start, previous);
+                game.addPipe(pipe);
+                if (previous instanceof Pump pump) {
+                    pump.outPipe = pipe;
+                }
+                if (c == columns) {
+                    connect(end, cisternOfRow[r]);
+                    break;
+                }
+                Pump pump = new Pump("Pump" + (r * columns + c + 1),
+                        new Point((c + 1) * CELL_SIZE, y), NODE_SIZE, NODE_SIZE);
+                pump.setMaxConnectablePipes(rand.nextInt(minFanOut, maxFanOut + 1));
+                pump.setWorkingTurns(rand.nextInt(8, 24));
+                connect(end, pump);
+                pump.inPipe = pipe;
+                game.addPump(pump);
+                row[c] = pump;
+                previous = pump;
+            }
+
+            if (above != null) {
+                for (int c = 0; c < columns; c++) {
+                    Pump top = above[c];
+                    Pump bottom = row[c];
+                    if (hasConnectionsLeft(top) && hasConnectionsLeft(bottom) && rand.nextDouble() < verticalPipeChance) {
+                        Pipe pipe = new Pipe("Pipe" + (++pipes), new Point((c + 1) * CELL_SIZE + (NODE_SIZE - PIPE_WIDTH) / 2,
+                                y - PIPE_LENGTH), true, PIPE_WIDTH, PIPE_LENGTH);
+                        EndOfPipe start = new EndOfPipe(pipe, true);
+                        EndOfPipe end = new EndOfPipe(pipe, false);
+                        game.addEndOfPipe(start);
+                        game.addEndOfPipe(end);
+                        connect(start, top);
+                        connect(end, bottom);
+                        game.addPipe(pipe);
+                    }
+                }
+            }
+            above = row;
+        }
+
+        // added last, like on the default map, so that the cisterns are updated after the pipes feeding them
+        for (int i = 0; i < cisterns; i++) {
+            game.addCistern(cisternOfRow[i * rows / cisterns]);
+        }
+        game.placePlayers(springOfRow[0], NODE_SIZE / 4, cisternOfRow[0], NODE_SIZE / 4);
+    }
+
+    private static void connect(EndOfPipe end, Element element) {
+        element.connectablePipes.add(end.currentPipe);
+        end.connectToElement(element);
+    }
+
+    private static boolean hasConnectionsLeft(Pump pump) {
+        return pump.connectedPipes.size() < pump.getMaxConnectablePipes();
+    }
+}
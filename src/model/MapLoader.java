@@ -0,0 +1,333 @@
+package model;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the map of a game from a text file, one record per line, or from an image compiled by
+ * {@link MapCompiler}. The file is read line by line and
+ * every record is applied as soon as it has been read, so the whole file is never held in memory.
+ * <p>
+ * The first line is the header {@value #HEADER}. Blank lines and everything after a {@code #} are
+ * ignored. The fields of a record are separated by spaces; a name containing spaces is put in double
+ * quotes. The records are:
+ * <pre>
+ * spring NAME X Y WIDTH HEIGHT
+ * cistern NAME X Y WIDTH HEIGHT
+ * pump NAME X Y WIDTH HEIGHT [CONNECTIONS]    the number of connectable pipes, random from 3 to 5 if left out
+ * pipe NAME X Y WIDTH HEIGHT horizontal|vertical
+ * end PIPE start|end [ADJUST_X ADJUST_Y]     adds an end to a pipe
+ * connect PIPE start|end ELEMENT             connects an end of a pipe to an element
+ * connectable ELEMENT PIPE...                 the pipes that can be connected to an element
+ * input PUMP PIPE
+ * output PUMP PIPE
+ * players SPRING OFFSET CISTERN OFFSET       where the Plumbers and the Saboteurs start
+ * </pre>
+ * Elements are added to the game in the order of their records, and must be declared before they are
+ * referred to. Names must be unique.
+ */
+public class MapLoader {
+    /**
+     * The first line of every map file.
+     */
+    public static final String HEADER = "pipes-map 1";
+
+    private int elementCount;
+    private long loadTime;
+    private long allocatedBytes;
+
+    /**
+     * Replaces the map of the given game with the one in the given file, which is either a text map
+     * or an image compiled by {@link MapCompiler}.
+     *
+     * @throws IOException if the file cannot be read or is not a valid map
+     */
+    public void load(Game game, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            if (MapCompiler.isImage(channel)) {
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                long allocatedBefore = allocatedBytes(threads);
+                long start = System.nanoTime();
+                MapCompiler.load(game, channel);
+                loaded(game, start, allocatedBefore, threads);
+                return;
+            }
+        } catch (IOException e) {
+            throw new IOException(path + ": " + e.getMessage(), e);
+        }
+        try (BufferedReader in = Files.newBufferedReader(path)) {
+            load(game, in);
+        } catch (IOException e) {
+            throw new IOException(path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replaces the map of the given game with the one read from the given reader.
+     *
+     * @throws IOException if the map cannot be read or is not valid
+     */
+    public void load(Game game, Reader reader) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long start = System.nanoTime();
+
+        BufferedReader in = reader instanceof BufferedReader b ? b : new BufferedReader(reader);
+        Map<String, Element> elements = new HashMap<>();
+        Spring playerSpring = null;
+        Cistern playerCistern = null;
+        int plumberOffset = 0;
+        int saboteurOffset = 0;
+        game.clearMap();
+
+        String line = in.readLine();
+        if (line == null || !line.trim().equals(HEADER)) {
+            throw new IOException("line 1: expected the header \"" + HEADER + "\"");
+        }
+        int lineNumber = 1;
+        List<String> fields = new ArrayList<>();
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            split(line, fields, lineNumber);
+            if (fields.isEmpty()) {
+                continue;
+            }
+            try {
+                switch (fields.get(0)) {
+                    case "spring" -> {
+                        expect(fields, 6, 6);
+                        Spring s = new Spring(fields.get(1), point(fields));
+                        resize(s, fields);
+                        declare(elements, s);
+                        game.addSpring(s);
+                    }
+                    case "cistern" -> {
+                        expect(fields, 6, 6);
+                        Cistern c = new Cistern(fields.get(1), point(fields), game);
+                        resize(c, fields);
+                        declare(elements, c);
+                        game.addCistern(c);
+                    }
+                    case "pump" -> {
+                        expect(fields, 6, 7);
+                        Pump p = new Pump(fields.get(1), point(fields), number(fields, 4), number(fields, 5));
+                        if (fields.size() == 7) {
+                            p.setMaxConnectablePipes(number(fields, 6));
+                        }
+                        declare(elements, p);
+                        game.addPump(p);
+                    }
+                    case "pipe" -> {
+                        expect(fields, 7, 7);
+                        boolean vertical = switch (fields.get(6)) {
+                            case "vertical" -> true;
+                            case "horizontal" -> false;
+                            default -> throw new IllegalArgumentException("expected horizontal or vertical, was " + fields.get(6));
+                        };
+                        Pipe p = new Pipe(fields.get(1), point(fields), vertical, number(fields, 4), number(fields, 5));
+                        declare(elements, p);
+                        game.addPipe(p);
+                    }
+                    case "end" -> {
+                        if (fields.size() != 3 && fields.size() != 5) {
+                            throw new IllegalArgumentException("end expects 2 or 4 fields, got " + (fields.size() - 1));
+                        }
+                        Pipe pipe = element(elements, fields.get(1), Pipe.class);
+                        boolean atStart = side(fields.get(2));
+                        if (pipe.endsOfPipe[0] != null && pipe.endsOfPipe[1] != null) {
+                            throw new IllegalArgumentException(pipe.getName() + " already has two ends");
+                        }
+                        EndOfPipe end = fields.size() == 5
+                                ? new EndOfPipe(pipe, atStart, number(fields, 3), number(fields, 4))
+                                : new EndOfPipe(pipe, atStart);
+                        game.addEndOfPipe(end);
+                    }
+                    case "connect" -> {
+                        expect(fields, 4, 4);
+                        Pipe pipe = element(elements, fields.get(1), Pipe.class);
+                        boolean atStart = side(fields.get(2));
+                        EndOfPipe end = null;
+                        for (EndOfPipe e : pipe.endsOfPipe) {
+                            if (e != null && e.atStart == atStart) {
+                                end = e;
+                            }
+                        }
+                        if (end == null) {
+                            throw new IllegalArgumentException(pipe.getName() + " has no " + fields.get(2));
+                        }
+                        end.connectToElement(element(elements, fields.get(3), Element.class));
+                    }
+                    case "connectable" -> {
+                        expect(fields, 2, Integer.MAX_VALUE);
+                        Element e = element(elements, fields.get(1), Element.class);
+                        for (int i = 2; i < fields.size(); i++) {
+                            e.connectablePipes.add(element(elements, fields.get(i), Pipe.class));
+                        }
+                    }
+                    case "input" -> {
+                        expect(fields, 3, 3);
+                        element(elements, fields.get(1), Pump.class).inPipe = element(elements, fields.get(2), Pipe.class);
+                    }
+                    case "output" -> {
+                        expect(fields, 3, 3);
+                        element(elements, fields.get(1), Pump.class).outPipe = element(elements, fields.get(2), Pipe.class);
+                    }
+                    case "players" -> {
+                        expect(fields, 5, 5);
+                        playerSpring = element(elements, fields.get(1), Spring.class);
+                        plumberOffset = number(fields, 2);
+                        playerCistern = element(elements, fields.get(3), Cistern.class);
+                        saboteurOffset = number(fields, 4);
+                    }
+                    default -> throw new IllegalArgumentException("unknown record " + fields.get(0));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        if (playerSpring == null && !game.springList.isEmpty() && !game.cisternList.isEmpty()) {
+            playerSpring = game.springList.get(0);
+            playerCistern = game.cisternList.get(0);
+        }
+        if (playerSpring != null) {
+            game.placePlayers(playerSpring, plumberOffset, playerCistern, saboteurOffset);
+        }
+
+        loaded(game, start, allocatedBefore, threads);
+    }
+
+    private void loaded(Game game, long start, long allocatedBefore, ThreadMXBean threads) {
+        elementCount = game.elementList.size();
+        loadTime = System.nanoTime() - start;
+        allocatedBytes = allocatedBefore < 0 ? -1 : allocatedBytes(threads) - allocatedBefore;
+    }
+
+    /**
+     * Returns the number of elements of the map loaded last.
+     */
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * Returns how long loading the last map took, in nanoseconds.
+     */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Returns the number of bytes allocated while loading the last map, including garbage, or -1
+     * if the virtual machine does not measure it.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns a line describing the last load, for printing.
+     */
+    public String describe() {
+        return "Loaded " + elementCount + " elements in " + loadTime / 1_000_000 + " ms"
+                + (allocatedBytes < 0 ? "." : ", allocating " + allocatedBytes / 1024 + " KB.");
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean t && t.isThreadAllocatedMemoryEnabled()) {
+            return t.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Splits a line into its fields, dropping the comment at its end.
+     */
+    private static void split(String line, List<String> fields, int lineNumber) throws IOException {
+        fields.clear();
+        int i = 0;
+        int length = line.length();
+        while (i < length) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#') {
+                break;
+            } else if (c == '"') {
+                int close = line.indexOf('"', i + 1);
+                if (close < 0) {
+                    throw new IOException("line " + lineNumber + ": unterminated quote");
+                }
+                fields.add(line.substring(i + 1, close));
+                i = close + 1;
+            } else {
+                int start = i;
+                while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                fields.add(line.substring(start, i));
+            }
+        }
+    }
+
+    private static void expect(List<String> fields, int min, int max) {
+        if (fields.size() < min || fields.size() > max) {
+            String expected = min == max ? String.valueOf(min - 1)
+                    : max == Integer.MAX_VALUE ? "at least " + (min - 1) : min - 1 + " to " + (max - 1);
+            throw new IllegalArgumentException(fields.get(0) + " expects " + expected + " fields, got " + (fields.size() - 1));
+        }
+    }
+
+    private static int number(List<String> fields, int index) {
+        try {
+            return Integer.parseInt(fields.get(index));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected a number, was " + fields.get(index));
+        }
+    }
+
+    private static Point point(List<String> fields) {
+        return new Point(number(fields, 2), number(fields, 3));
+    }
+
+    private static void resize(Element e, List<String> fields) {
+        e.width = number(fields, 4);
+        e.height = number(fields, 5);
+    }
+
+    private static boolean side(String field) {
+        return switch (field) {
+            case "start" -> true;
+            case "end" -> false;
+            default -> throw new IllegalArgumentException("expected start or end, was " + field);
+        };
+    }
+
+    private static void declare(Map<String, Element> elements, Element e) {
+        if (elements.putIfAbsent(e.getName(), e) != null) {
+            throw new IllegalArgumentException("there is already an element named " + e.getName());
+        }
+    }
+
+    private static <T extends Element> T element(Map<String, Element> elements, String name, Class<T> type) {
+        Element e = elements.get(name);
+        if (e == null) {
+            throw new IllegalArgumentException("no element named " + name);
+        }
+        if (!type.isInstance(e)) {
+            throw new IllegalArgumentException(name + " is not a " + type.getSimpleName().toLowerCase());
+        }
+        return type.cast(e);
+    }
+}
@@ -0,0 +1,111 @@
+package model;
+
+import java.awt.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the layout of a game in the text format read by {@link MapLoader}: the elements in the order
+ * of {@link Game#elementList}, the ends of pipes in the order of {@link Game#endOfPipeList}, and then
+ * the connections, input and output pipes of every element. Loading the file gives a map that behaves
+ * the same, element for element. Only the layout is written, not the water in the pipes or the state
+ * of the players.
+ */
+public class MapWriter {
+    private MapWriter() {}
+
+    /**
+     * Writes the map of the given game to a file, replacing it if it exists.
+     */
+    public static void write(Game game, Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            write(game, out);
+        }
+    }
+
+    /**
+     * Writes the map of the given game. The names of the elements must be unique.
+     */
+    public static void write(Game game, Writer out) throws IOException {
+        out.write(MapLoader.HEADER + "\n");
+        for (Element e : game.elementList) {
+            Point p = e.getPosition();
+            if (e instanceof Spring) {
+                record(out, "spring", name(e), p.x, p.y, e.width, e.height);
+            } else if (e instanceof Cistern) {
+                record(out, "cistern", name(e), p.x, p.y, e.width, e.height);
+            } else if (e instanceof Pump) {
+                record(out, "pump", name(e), p.x, p.y, e.width, e.height, e.getMaxConnectablePipes());
+            } else if (e instanceof Pipe pipe) {
+                record(out, "pipe", name(e), p.x, p.y, e.width, e.height, pipe.vertical ? "vertical" : "horizontal");
+            }
+        }
+        for (EndOfPipe end : game.endOfPipeList) {
+            if (end.adjustX != 0 || end.adjustY != 0) {
+                record(out, "end", name(end.currentPipe), side(end), end.adjustX, end.adjustY);
+            } else {
+                record(out, "end", name(end.currentPipe), side(end));
+            }
+        }
+        for (Element e : game.elementList) {
+            for (Pipe pipe : e.connectedPipes) {
+                for (EndOfPipe end : pipe.endsOfPipe) {
+                    if (end != null && end.getConnectedElement() == e) {
+                        record(out, "connect", name(pipe), side(end), name(e));
+                    }
+                }
+            }
+            if (!e.connectablePipes.isEmpty()) {
+                StringBuilder line = new StringBuilder("connectable ").append(name(e));
+                for (Pipe pipe : e.connectablePipes) {
+                    line.append(' ').append(name(pipe));
+                }
+                out.write(line.append('\n').toString());
+            }
+            if (e instanceof Pump pump) {
+                if (pump.inPipe != null) {
+                    record(out, "input", name(pump), name(pump.inPipe));
+                }
+                if (pump.outPipe != null) {
+                    record(out, "output", name(pump), name(pump.outPipe));
+                }
+            }
+        }
+        if (game.plumbers != null && game.plumbers.length > 0 && game.saboteurs.length > 0
+                && game.plumbers[0].currentElement instanceof Spring spring
+                && game.saboteurs[0].currentElement instanceof Cistern cistern) {
+            record(out, "players", name(spring), game.plumbers[0].getPosition().x - spring.getPosition().x,
+                    name(cistern), game.saboteurs[0].getPosition().x - cistern.getPosition().x);
+        }
+    }
+
+    private static void record(Writer out, Object... fields) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (Object field : fields) {
+            if (line.length() > 0) {
+                line.append(' ');
+            }
+            line.append(field);
+        }
+        out.write(line.append('\n').toString());
+    }
+
+    private static String side(EndOfPipe end) {
+        return end.atStart ? "start" : "end";
+    }
+
+    /**
+     * Returns the name of an element as a field of a record, in quotes if it contains spaces.
+     */
+    private static String name(Element e) {
+        String name = e.getName();
+        if (name.indexOf('"') >= 0 || name.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("The name of an element cannot contain quotes or line breaks: " + name);
+        }
+        return name.isEmpty() || name.chars().anyMatch(Character::isWhitespace) || name.startsWith("#")
+                ? '"' + name + '"' : name;
+    }
+}
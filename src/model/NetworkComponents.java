@@ -0,0 +1,269 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Partitions the elements of a game into the connected components of the pipe system. An element
+ * only reads and changes the state of the elements it is linked to, through the ends of its pipes or
+ * as the input or output pipe of a pump, so components never touch each other's state and can be
+ * updated in any order, or at the same time, with the same result.
+ * <p>
+ * When the topology changes, only the components around the changed elements are rebuilt.
+ */
+final class NetworkComponents {
+    /**
+     * Elements that only exchange water among each other, in propagation order.
+     */
+    static final class Component {
+        final List<Element> order;
+        /**
+         * Elements outside the game that the members of this component still pass water to, such as
+         * a pipe that was removed while it was the output of a pump.
+         */
+        final List<Element> referenced;
+        final ActivityTracker tracker;
+
+        Component(List<Element> order, List<Element> referenced) {
+            this.order = order;
+            this.referenced = referenced;
+            tracker = new ActivityTracker(order);
+            for (Element e : order) {
+                e.setListener(tracker);
+            }
+        }
+
+        /**
+         * Updates the elements of this component once.
+         *
+         * @param incremental true to skip the elements whose update would not change anything
+         * @param metrics     the metrics to record the time of every update in, or null not to time them
+         * @return the number of elements updated
+         */
+        int update(boolean incremental, EngineMetrics metrics) {
+            if (incremental) {
+                return tracker.tick(metrics);
+            }
+            for (Element e : order) {
+                if (metrics != null) {
+                    metrics.timeUpdate(e);
+                } else {
+                    e.update();
+                }
+            }
+            return order.size();
+        }
+    }
+
+    private final List<Component> components = new ArrayList<>();
+    private final Map<Element, Component> componentOf;
+    private List<Element> order;
+    private int[] weights;
+
+    /**
+     * Partitions the given elements.
+     */
+    NetworkComponents(List<Element> elements) {
+        componentOf = new IdentityHashMap<>(elements.size());
+        rebuild(elements, Collections.emptySet());
+    }
+
+    private NetworkComponents(int size) {
+        componentOf = new IdentityHashMap<>(size);
+    }
+
+    /**
+     * Takes over a partition computed before, such as the one stored in a compiled map, without checking it.
+     *
+     * @param orders the elements of every component, in propagation order
+     */
+    static NetworkComponents of(List<List<Element>> orders) {
+        int size = 0;
+        for (List<Element> order : orders) {
+            size += order.size();
+        }
+        NetworkComponents partition = new NetworkComponents(size);
+        for (List<Element> order : orders) {
+            Component c = new Component(order, Collections.emptyList());
+            partition.components.add(c);
+            for (Element e : order) {
+                partition.componentOf.put(e, c);
+            }
+        }
+        return partition;
+    }
+
+    /**
+     * Calls the given action for every element the given element reads or changes the state of on a tick,
+     * and every element that does so with the given element.
+     */
+    static void forEachNeighbour(Element element, Consumer<Element> action) {
+        if (element instanceof Pipe pipe) {
+            for (EndOfPipe end : pipe.endsOfPipe) {
+                if (end != null && end.getConnectedElement() != null) {
+                    action.accept(end.getConnectedElement());
+                }
+            }
+            return;
+        }
+        for (Pipe pipe : element.connectedPipes) {
+            action.accept(pipe);
+        }
+        if (element instanceof Pump pump) {
+            if (pump.inPipe != null) {
+                action.accept(pump.inPipe);
+            }
+            if (pump.outPipe != null) {
+                action.accept(pump.outPipe);
+            }
+        }
+    }
+
+    List<Component> components() {
+        return components;
+    }
+
+    /**
+     * Returns the elements of all components, one component after the other.
+     */
+    List<Element> order() {
+        if (order == null) {
+            List<Element> all = new ArrayList<>();
+            for (Component c : components) {
+                all.addAll(c.order);
+            }
+            order = Collections.unmodifiableList(all);
+        }
+        return order;
+    }
+
+    /**
+     * Returns the running total of the component sizes: entry i is the number of elements in the
+     * components before component i, and the last entry the number of elements in all of them.
+     */
+    int[] weights() {
+        if (weights == null) {
+            weights = new int[components.size() + 1];
+            for (int i = 0; i < components.size(); i++) {
+                weights[i + 1] = weights[i] + components.get(i).order.size();
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Rebuilds the components containing or next to the given elements.
+     *
+     * @param changed the elements that were added or removed, or whose connections changed
+     * @param removed those of the changed elements that are no longer part of the game
+     */
+    void rebuild(Collection<Element> changed, Set<Element> removed) {
+        Set<Component> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Element> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Element> members = new ArrayList<>();
+        Consumer<Element> take = e -> {
+            Component c = componentOf.get(e);
+            if (c != null && affected.add(c)) {
+                for (Element m : c.order) {
+                    if (!removed.contains(m) && seen.add(m)) {
+                        members.add(m);
+                    }
+                }
+            }
+        };
+        for (Element e : changed) {
+            take.accept(e);
+            if (!removed.contains(e) && seen.add(e)) {
+                members.add(e);
+            }
+        }
+
+        // union-find over the members and the elements they are linked to
+        Map<Element, Element> parent = new IdentityHashMap<>(members.size() * 2);
+        Set<Element> outside = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < members.size(); i++) {
+            Element m = members.get(i);
+            forEachNeighbour(m, n -> {
+                take.accept(n);
+                if (!seen.contains(n)) {
+                    outside.add(n);
+                }
+                union(parent, m, n);
+            });
+        }
+
+        Map<Element, List<Element>> groups = new IdentityHashMap<>();
+        List<Element> roots = new ArrayList<>();
+        for (Element m : members) {
+            Element root = find(parent, m);
+            List<Element> group = groups.get(root);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(root, group);
+                roots.add(root);
+            }
+            group.add(m);
+        }
+        Map<Element, List<Element>> referenced = new IdentityHashMap<>();
+        for (Element e : outside) {
+            referenced.computeIfAbsent(find(parent, e), k -> new ArrayList<>()).add(e);
+        }
+
+        components.removeIf(affected::contains);
+        for (Component c : affected) {
+            for (Element e : c.order) {
+                componentOf.remove(e);
+            }
+            for (Element e : c.referenced) {
+                componentOf.remove(e);
+                e.setListener(null);
+            }
+        }
+        for (Element e : removed) {
+            e.setListener(null);
+        }
+        for (Element root : roots) {
+            List<Element> extra = referenced.getOrDefault(root, Collections.emptyList());
+            Component c = new Component(PropagationOrder.compute(groups.get(root)), extra);
+            components.add(c);
+            for (Element e : c.order) {
+                componentOf.put(e, c);
+            }
+            for (Element e : extra) {
+                e.setListener(null);
+                componentOf.put(e, c);
+            }
+        }
+        order = null;
+        weights = null;
+    }
+
+    private static Element find(Map<Element, Element> parent, Element e) {
+        Element root = e;
+        Element p;
+        while ((p = parent.get(root)) != null) {
+            root = p;
+        }
+        // path compression
+        while (e != root) {
+            Element next = parent.get(e);
+            parent.put(e, root);
+            e = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<Element, Element> parent, Element a, Element b) {
+        Element rootA = find(parent, a);
+        Element rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent.put(rootB, rootA);
+        }
+    }
+}
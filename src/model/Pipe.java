@@ -16,9 +16,9 @@ import java.awt.*;
 public class Pipe extends Element {
 
     /**
-     * Publicly accessible amount of water that has leaked from the pipe.
+     * The amount of water that has leaked from the pipe.
      */
-    public int leakedAmount = 0;
+    private int leakedAmount = 0;
 
 public boolean vertical;
     /**
@@ -53,12 +53,38 @@ public boolean vertical;
         setMaxCapacity(10);
     }
 
+    /**
+     * Returns the amount of water that has leaked from the pipe.
+     */
+    public int getLeakedAmount() {
+        return network != null ? network.leakedAmount[networkId] : leakedAmount;
+    }
+
+    /**
+     * Sets the amount of water that has leaked from the pipe.
+     * @param amount the leaked amount
+     */
+    public void setLeakedAmount(int amount) {
+        if (network != null) {
+            network.leakedAmount[networkId] = amount;
+        } else {
+            leakedAmount = amount;
+        }
+    }
+
     /**
      * Increments the leaked amount if the water level is sufficient and decrements the water level.
      */
     public void incrementLeakage() {
+        if (network != null) {
+            network.leak(networkId);
+            return;
+        }
         if (getWaterLevel() >= 2) {
             leakedAmount += 2;
+            if (scores != null) {
+                scores.addLeaked(2);
+            }
         }
         decrementWater();
     }
@@ -30,7 +30,20 @@ public abstract class Player {
     protected abstract void takeTurn(Game g);
 
     protected void passTurn(){
-        System.out.println(playerName + " passed their turn.");
+        GameLog.log(GameEvent.Kind.ACTION, "{} passed their turn.", playerName);
+    }
+
+    /**
+     * Takes an action, recording it as a {@link PlayerActionEvent} for the flight recorder.
+     *
+     * @param name   the name of the action in the event, such as {@code puncture}
+     * @param action the action
+     */
+    protected void perform(String name, Runnable action) {
+        PlayerActionEvent event = PlayerActionEvent.start();
+        Element element = currentElement;
+        action.run();
+        event.finish(this, name, element, null);
     }
 
     /**
@@ -48,31 +61,32 @@ public abstract class Player {
      */
        protected void changeInputPipe(Game game) {
            if (!(currentElement instanceof Pump)) {
-               System.out.println("You are not currently on a pump. Move to a pump first.");
+               GameLog.log(GameEvent.Kind.REJECTED, "You are not currently on a pump. Move to a pump first.");
                return;
            }
 
            Pump currentPump = (Pump) currentElement;
-          System.out.println("Currently connected pipes to the pump '" + currentPump.getName() + "':");
+          GameLog.log(GameEvent.Kind.PROMPT, "Currently connected pipes to the pump '{}':", currentPump.getName());
            List<Pipe> connectedPipes = currentPump.connectedPipes;
            for (int i = 0; i < connectedPipes.size(); i++) {
-              System.out.println((i + 1) + ". " + connectedPipes.get(i).getName());
+              GameLog.log(GameEvent.Kind.PROMPT, "{}. {}", (i + 1), connectedPipes.get(i).getName());
            }
 
-          System.out.println("Select the number of the pipe to set as the new input pipe:");
+          GameLog.log(GameEvent.Kind.PROMPT, "Select the number of the pipe to set as the new input pipe:");
            String input;
            try {
                input = "temporarily";
                int pipeNumber = 2; // temporarily
                if (pipeNumber < 1 || pipeNumber > connectedPipes.size()) {
-                   System.out.println("Invalid input. Select a number listed above.");
+                   GameLog.log(GameEvent.Kind.REJECTED, "Invalid input. Select a number listed above.");
                } else {
                    Pipe selectedPipe = connectedPipes.get(pipeNumber - 1);
                    currentPump.inPipe = selectedPipe;
-                   System.out.println(playerName + " changed the input pipe of " + currentPump.getName() + " to " + selectedPipe.getName());
+                   game.topologyChanged(currentPump);
+                   GameLog.log(GameEvent.Kind.ACTION, "{} changed the input pipe of {} to {}", playerName, currentPump.getName(), selectedPipe.getName());
                }
            } catch (NumberFormatException e) {
-               System.out.println("Invalid input. Please enter a number or a valid pipe name.");
+               GameLog.log(GameEvent.Kind.REJECTED, "Invalid input. Please enter a number or a valid pipe name.");
            }
        }
 
@@ -93,18 +107,18 @@ public abstract class Player {
      */
     protected void changeOutputPipe(Game game) {
         if (!(currentElement instanceof Pump)) {
-           System.out.println("You are not currently on a pump. Move to a pump first.");
+           GameLog.log(GameEvent.Kind.REJECTED, "You are not currently on a pump. Move to a pump first.");
             return;
         }
 
         Pump currentPump = (Pump) currentElement;
-      System.out.println("Currently connected pipes to the pump '" + currentPump.getName() + "':");
+      GameLog.log(GameEvent.Kind.PROMPT, "Currently connected pipes to the pump '{}':", currentPump.getName());
         List<Pipe> connectedPipes = currentPump.connectedPipes;
         for (int i = 0; i < connectedPipes.size(); i++) {
-       System.out.println((i + 1) + ". " + connectedPipes.get(i).getName());
+       GameLog.log(GameEvent.Kind.PROMPT, "{}. {}", (i + 1), connectedPipes.get(i).getName());
         }
 
-        System.out.println("Select the number of the pipe to set as the new output pipe:");
+        GameLog.log(GameEvent.Kind.PROMPT, "Select the number of the pipe to set as the new output pipe:");
         String input = "temporarily";
         try {
             int pipeNumber = 2; // temporarily
@@ -112,20 +126,22 @@ public abstract class Player {
                 for (Pipe pipe : connectedPipes) {
                     if (pipe.getName().equalsIgnoreCase(input)) {
                         currentPump.outPipe = pipe;
-                        System.out.println(playerName + " changed the output pipe of " + currentPump.getName() + " to " + pipe.getName());
+                        game.topologyChanged(currentPump);
+                        GameLog.log(GameEvent.Kind.ACTION, "{} changed the output pipe of {} to {}", playerName, currentPump.getName(), pipe.getName());
                         return;
                     }
                 }
-                System.out.println("Invalid input. Select a pipe listed above.");
+                GameLog.log(GameEvent.Kind.REJECTED, "Invalid input. Select a pipe listed above.");
             } if (pipeNumber < 1 || pipeNumber > connectedPipes.size()) {
-                System.out.println("Invalid input. Select a number listed above.");
+                GameLog.log(GameEvent.Kind.REJECTED, "Invalid input. Select a number listed above.");
             } else {
                 Pipe selectedPipe = connectedPipes.get(pipeNumber - 1);
                 currentPump.outPipe = selectedPipe;
-                System.out.println(playerName + " changed the output pipe of " + currentPump.getName() + " to " + selectedPipe.getName());
+                game.topologyChanged(currentPump);
+                GameLog.log(GameEvent.Kind.ACTION, "{} changed the output pipe of {} to {}", playerName, currentPump.getName(), selectedPipe.getName());
             }
         } catch (NumberFormatException e) {
-            System.out.println("Invalid input. Please enter a number or a valid pipe name.");
+            GameLog.log(GameEvent.Kind.REJECTED, "Invalid input. Please enter a number or a valid pipe name.");
         }
     }
 
@@ -146,6 +162,8 @@ public abstract class Player {
      * @author Nafez Mousa Sayyad
      */
     public void move(Game game, Element chosenElement) {
+        PlayerActionEvent event = PlayerActionEvent.start();
+        Element from = currentElement;
 
         List<Element> elements = game.elementList;
 
@@ -166,19 +184,20 @@ public abstract class Player {
                         if (chosenElement instanceof Pipe) {
                             chosenElement.setOccupied(true); // Mark new element as occupied if it is a pipe
                         }
-                        System.out.println( playerName + " moved to " + chosenElement.getName());
+                        GameLog.log(GameEvent.Kind.ACTION, "{} moved to {}", playerName, chosenElement.getName());
                     } else {
-                        System.out.println("This location is currently occupied. Choose another location.");
+                        GameLog.log(GameEvent.Kind.REJECTED, "This location is currently occupied. Choose another location.");
                     }
                     break;
                 } else {
-                    System.out.println("You are already at this location.");
+                    GameLog.log(GameEvent.Kind.REJECTED, "You are already at this location.");
                     break;
                 }
             } catch (InputMismatchException e) {
-                System.out.println("Invalid input. Please enter a number.");
+                GameLog.log(GameEvent.Kind.REJECTED, "Invalid input. Please enter a number.");
             }
         }
+        event.finish(this, "move", from, chosenElement);
     }
 
 
@@ -0,0 +1,10 @@
+package model;
+
+/**
+ * A key pressed by a player, together with the time at which it was pressed.
+ *
+ * @param key       the character of the pressed key
+ * @param timestamp the time of the key press in milliseconds, as given by {@link System#currentTimeMillis()}
+ */
+public record PlayerAction(char key, long timestamp) {
+}
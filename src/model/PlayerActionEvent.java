@@ -0,0 +1,58 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for an action of a player, such as moving, puncturing a pipe or inserting a
+ * pump. It is started with {@link #start()} before the action and {@linkplain #finish finished} after it.
+ */
+@Name("pipes.PlayerAction")
+@Label("Player Action")
+@Category({TickEvent.CATEGORY, "Players"})
+@Description("An action taken by a player during their turn")
+public final class PlayerActionEvent extends jdk.jfr.Event {
+    @Label("Player")
+    String player;
+
+    @Label("Action")
+    String action;
+
+    @Label("Element")
+    @Description("The element the player stood on when taking the action")
+    String element;
+
+    @Label("Target")
+    @Description("The element the action was aimed at, such as the element moved to or the pipe chosen")
+    String target;
+
+    /**
+     * Starts timing an action.
+     */
+    public static PlayerActionEvent start() {
+        PlayerActionEvent event = new PlayerActionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the action and records it, if the event is enabled in a running recording.
+     *
+     * @param player  the player who took the action
+     * @param action  the name of the action, such as {@code puncture}
+     * @param element the element the player stood on, or null
+     * @param target  the element the action was aimed at, or null
+     */
+    public void finish(Player player, String action, Element element, Element target) {
+        end();
+        if (shouldCommit()) {
+            this.player = player.playerName;
+            this.action = action;
+            this.element = element != null ? element.getName() : null;
+            this.target = target != null ? target.getName() : null;
+            commit();
+        }
+    }
+}
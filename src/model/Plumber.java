@@ -1,15 +1,11 @@
 package model;
 
-import gui.MapGUI;
-
 import java.awt.*;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
-import static gui.MapGUI.getSelectedEndOfPipe;
-import static gui.MapGUI.selectedEndOfPipe;
 import static java.lang.System.exit;
 
 /**
@@ -48,95 +44,99 @@ public class Plumber extends Player {
         boolean passflag = false;
         int actionstaken=0;
         long turnStartTime = System.currentTimeMillis();
-        long turnDuration = 10000; //
+        long turnDuration = g.turnDuration;
 
 
-        while (System.currentTimeMillis() < turnStartTime + turnDuration && actionstaken < 2) {
-            char choice = Character.toUpperCase(g.getCurrentAction());
-            if (choice != '\0') {
+        while (actionstaken < 2) {
+            PlayerAction action = g.nextAction(g.turnStart, turnStartTime + turnDuration);
+            if (action == null) {
+                break; // the turn timer ran out
+            }
+            char choice = Character.toUpperCase(action.key());
+            synchronized (g) { // actions must not interleave with a tick of the simulation clock
                 switch (choice) {
                     case 'Q':
-                        System.out.println("You chose: Move to an element");
-                        MapGUI.isMoveActive = true;
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Move to an element");
+                        g.isMoveActive = true;
                         actionstaken++;
                         break;
                     case 'D':
-                        System.out.println("You chose: Pick up a pump");
-                        getPump(g);
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Pick up a pump");
+                        perform("getPump", () -> getPump(g));
                         actionstaken++;
                         break;
                     case 'I':
-                        System.out.println("You chose: Insert pump into a pipe");
-                        insertPump(g);
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Insert pump into a pipe");
+                        perform("insertPump", () -> insertPump(g));
                         actionstaken++;
 
                         break;
                     case 'F':
-                        System.out.println("You chose: Fix a broken pump");
-                        fixPump();
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Fix a broken pump");
+                        perform("fixPump", this::fixPump);
                         actionstaken++;
                         break;
                     case 'O':
-                        System.out.println("You chose: Fix a broken pipe");
-                        fixPipe();
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Fix a broken pipe");
+                        perform("fixPipe", this::fixPipe);
                         actionstaken++;
                         break;
                     case 'R':
-                        System.out.println("You chose: Pick up the end of a pipe");
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Pick up the end of a pipe");
 
-                        getEnd(currentElement);
+                        perform("getEnd", () -> getEnd(currentElement));
                         actionstaken++;
                         break;
                     case 'T':
-                        System.out.println("You chose: Insert the end of a pipe");
-                        insertPipeEnd(currentElement);
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Insert the end of a pipe");
+                        perform("insertPipeEnd", () -> insertPipeEnd(currentElement));
                         actionstaken++;
                         break;
                     case 'A':
-                        System.out.println("You chose: Change the input pipe of a pump");
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Change the input pipe of a pump");
                         if(currentElement instanceof Pump)
                         {
-                            gameInstance.mapGUI.isChangingInputPipe = true;
-                            gameInstance.mapGUI.isChangingOutputPipe = false;
-                            gameInstance.mapGUI.selectedPump =(Pump) currentElement;
-                            System.out.println("Please choose a pipe that is connected to the Pump");
+                            gameInstance.isChangingInputPipe = true;
+                            gameInstance.isChangingOutputPipe = false;
+                            gameInstance.selectedPump =(Pump) currentElement;
+                            GameLog.log(GameEvent.Kind.PROMPT, "Please choose a pipe that is connected to the Pump");
                         }
                         else
                         {
-                            System.out.println("You have to be standing on a pump to change the input pipe.");
+                            GameLog.log(GameEvent.Kind.REJECTED, "You have to be standing on a pump to change the input pipe.");
                         }
                         actionstaken++;
                         break;
                     case 'S':
-                        System.out.println("You chose: Change the output pipe of a pump");
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Change the output pipe of a pump");
                         if(currentElement instanceof Pump)
                         {
-                            gameInstance.mapGUI.isChangingOutputPipe = true;
-                            gameInstance.mapGUI.isChangingInputPipe = false;
-                            gameInstance.mapGUI.selectedPump =(Pump) currentElement;
-                            System.out.println("Please choose a pipe that is connected to the Pump");
+                            gameInstance.isChangingOutputPipe = true;
+                            gameInstance.isChangingInputPipe = false;
+                            gameInstance.selectedPump =(Pump) currentElement;
+                            GameLog.log(GameEvent.Kind.PROMPT, "Please choose a pipe that is connected to the Pump");
                         }
                         else
                         {
-                            System.out.println("You have to be standing on a pump to change the output pipe.");
+                            GameLog.log(GameEvent.Kind.REJECTED, "You have to be standing on a pump to change the output pipe.");
                         }
                         actionstaken++;
                         break;
                     case 'W':
-                        System.out.println("You chose: Pass Turn");
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: Pass Turn");
                         passflag = true;
                         passTurn();
                         return;
                         /*
                     case 'E':
-                        System.out.println("You chose: End the game");
+                        GameLog.log(GameEvent.Kind.PROMPT, "You chose: End the game");
                         g.endGame();
                         exit(0);
                         break;
 
                          */
                     default:
-                        System.out.println("Invalid input, please choose one of the valid options.");
+                        GameLog.log(GameEvent.Kind.REJECTED, "Invalid input, please choose one of the valid options.");
                 }
             }
         }
@@ -159,24 +159,24 @@ public class Plumber extends Player {
      * @author : Basel Al-Raoush , Nafez sayyad
      */
     public void getEnd(Element e) {
-        // Retrieve the selectedEndOfPipe from MapGUI
-        EndOfPipe selectedEndOfPipe = MapGUI.getSelectedEndOfPipe();
+        // Retrieve the end of pipe selected on the map
+        EndOfPipe selectedEndOfPipe = gameInstance.selectedEndOfPipe;
 
         // First, check if the plumber is standing on the element
         if (currentElement != selectedEndOfPipe.getConnectedElement()) {
-            System.out.println("You have to be standing on the element to pick up the end of the pipe.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You have to be standing on the element to pick up the end of the pipe.");
             return;
         }
 
         // Check if the player has already picked up an end of pipe
         if (pickedUpEoP != null) {
-            System.out.println("You have already picked up an end of pipe.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You have already picked up an end of pipe.");
             return;
         }
 
         // Check if the element is not an instance of Pipe
         if (e instanceof Pipe) {
-            System.out.println("You can't pick up the end of a pipe from a pipe.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You can't pick up the end of a pipe from a pipe.");
             return;
         }
 
@@ -189,17 +189,19 @@ public class Plumber extends Player {
             }
         }
         if (!isConnected) {
-            System.out.println("The selected end of the pipe is not connected to the current element.");
+            GameLog.log(GameEvent.Kind.REJECTED, "The selected end of the pipe is not connected to the current element.");
             return;
         }
 
         // Set the visibility to false and update the picked-up end of the pipe
+        Pipe pipe = selectedEndOfPipe.currentPipe;
         selectedEndOfPipe.disconnectFromElement(e); // This should handle both the element and pipe updates
         selectedEndOfPipe.setCurrentPipe(null);
         pickedUpEoP = selectedEndOfPipe;
-        gameInstance.endOfPipeList.remove(selectedEndOfPipe);
-        gameInstance.mapGUI.repaint();
-        System.out.println(playerName + " picked up the end of the pipe connected to " + currentElement.getName());
+        gameInstance.removeEndOfPipe(selectedEndOfPipe);
+        gameInstance.topologyChanged(e, pipe);
+        gameInstance.engine.fireGameChanged();
+        GameLog.log(GameEvent.Kind.ACTION, "{} picked up the end of the pipe connected to {}", playerName, currentElement.getName());
     }
 
 
@@ -220,48 +222,48 @@ public class Plumber extends Player {
     public void insertPipeEnd(Element e) {
         // Check if the player is standing on the element
         if (currentElement != e) {
-            System.out.println("You have to be standing on the element to insert the end of the pipe.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You have to be standing on the element to insert the end of the pipe.");
             return;
         }
 
         // Check if the player has picked up an end of pipe
         if (pickedUpEoP == null) {
-            System.out.println("No end of pipe picked up to insert.");
+            GameLog.log(GameEvent.Kind.REJECTED, "No end of pipe picked up to insert.");
             return;
         }
 
 
             // List the connectable pipes that are not yet fully connected
             if (e.connectablePipes.isEmpty()) {
-                System.out.println("There are no connectable pipes available at this element.");
+                GameLog.log(GameEvent.Kind.REJECTED, "There are no connectable pipes available at this element.");
                 return;
             }
-            System.out.println("Connectable pipes:");
-            e.connectablePipes.forEach(pipe -> System.out.println(pipe.getName()));
+            GameLog.log(GameEvent.Kind.PROMPT, "Connectable pipes:");
+            e.connectablePipes.forEach(pipe -> GameLog.log(GameEvent.Kind.PROMPT, "{}", pipe.getName()));
             java.util.List<Pipe> connectableNotConnected = new ArrayList<>(e.connectablePipes);
             connectableNotConnected.removeAll(e.connectedPipes);
             if (connectableNotConnected.isEmpty()) {
-                System.out.println("All connectable pipes are already fully connected.");
+                GameLog.log(GameEvent.Kind.REJECTED, "All connectable pipes are already fully connected.");
                 return;
             }
             Pipe selectedPipe = connectableNotConnected.get(0);
 
             /* Prototype code for connecting the end of pipe to a pipe
             // Get user input on which pipe to connect the end to
-            System.out.print("Enter the name of the pipe to insert the end into: ");
+            GameLog.log(GameEvent.Kind.PROMPT, "Enter the name of the pipe to insert the end into:");
             String pipeName = "temp"; // temporarily set to a string
             Pipe selectedPipe = e.connectablePipes.stream()
                 .filter(pipe -> pipe.getName().equals(pipeName))
                 .findFirst()
                 .orElse(null);
         if (selectedPipe == null) {
-            System.out.println("Invalid pipe selection or not connectable.");
+            GameLog.log(GameEvent.Kind.REJECTED, "Invalid pipe selection or not connectable.");
             return;
         }
 
         // Check if the selected pipe can accept more connections
         if (selectedPipe.endsOfPipe[0] != null && selectedPipe.endsOfPipe[1] != null) {
-            System.out.println("Selected pipe already has both ends connected.");
+            GameLog.log(GameEvent.Kind.REJECTED, "Selected pipe already has both ends connected.");
             return;
         }
 */
@@ -280,8 +282,8 @@ public class Plumber extends Player {
             selectedPipe.endsOfPipe[0] = temp;
             selectedPipe.endsOfPipe[0].connectToElement(e);
             pickedUpEoP = null;
-            gameInstance.endOfPipeList.add(temp);
-            gameInstance.mapGUI.repaint();
+            gameInstance.addEndOfPipe(temp);
+            gameInstance.engine.fireGameChanged();
         }
         else if(selectedPipe.endsOfPipe[0] != null && selectedPipe.endsOfPipe[1] == null)
         {
@@ -297,8 +299,8 @@ public class Plumber extends Player {
             selectedPipe.endsOfPipe[1] = temp;
             selectedPipe.endsOfPipe[1].connectToElement(e);
             pickedUpEoP = null;
-            gameInstance.endOfPipeList.add(temp);
-            gameInstance.mapGUI.repaint();
+            gameInstance.addEndOfPipe(temp);
+            gameInstance.engine.fireGameChanged();
         }
         else if(selectedPipe.endsOfPipe[0] == null && selectedPipe.endsOfPipe[1] == null) {
             boolean atStart = true;
@@ -313,8 +315,8 @@ public class Plumber extends Player {
             selectedPipe.endsOfPipe[0] = temp;
             selectedPipe.endsOfPipe[0].connectToElement(e);
             pickedUpEoP = null;
-            gameInstance.endOfPipeList.add(temp);
-            gameInstance.mapGUI.repaint();
+            gameInstance.addEndOfPipe(temp);
+            gameInstance.engine.fireGameChanged();
         }
         else if(selectedPipe.endsOfPipe[0].currentPipe == null && selectedPipe.endsOfPipe[1].currentPipe != null)
         {
@@ -330,8 +332,8 @@ public class Plumber extends Player {
             selectedPipe.endsOfPipe[0] = temp;
             selectedPipe.endsOfPipe[0].connectToElement(e);
             pickedUpEoP = null;
-            gameInstance.endOfPipeList.add(temp);
-            gameInstance.mapGUI.repaint();
+            gameInstance.addEndOfPipe(temp);
+            gameInstance.engine.fireGameChanged();
         }
         else if(selectedPipe.endsOfPipe[0].currentPipe != null && selectedPipe.endsOfPipe[1].currentPipe == null)
         {
@@ -347,9 +349,10 @@ public class Plumber extends Player {
             selectedPipe.endsOfPipe[1] = temp;
             selectedPipe.endsOfPipe[1].connectToElement(e);
             pickedUpEoP = null;
-            gameInstance.endOfPipeList.add(temp);
-            gameInstance.mapGUI.repaint();
+            gameInstance.addEndOfPipe(temp);
+            gameInstance.engine.fireGameChanged();
         }
+        gameInstance.topologyChanged(e, selectedPipe);
     }
 
 
@@ -361,14 +364,14 @@ public class Plumber extends Player {
      */
     public  void fixPipe() {
         if (currentElement instanceof Pipe && currentElement.isWorking())
-            System.out.println(playerName + " attempted to fix " + currentElement.getName() + ", but it's already working.");
+            GameLog.log(GameEvent.Kind.REJECTED, "{} attempted to fix {}, but it's already working.", playerName, currentElement.getName());
         if (currentElement instanceof Pipe) {
             if (!currentElement.isWorking()) {
                 currentElement.setWorks(true);
-                System.out.println(playerName + " fixed " + currentElement.getName());
+                GameLog.log(GameEvent.Kind.ACTION, "{} fixed {}", playerName, currentElement.getName());
             }
         } else
-            System.out.println("You need to be standing on a punctured pipe to fix it.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You need to be standing on a punctured pipe to fix it.");
     }
 
 
@@ -382,21 +385,21 @@ public class Plumber extends Player {
     public void getPump(Game g1) {
         // Check if the current element is a Cistern
         if (!(currentElement instanceof Cistern)) {
-            System.out.println("You are not on a Cistern, move to a cistern with a manufactured pump to pick it up.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You are not on a Cistern, move to a cistern with a manufactured pump to pick it up.");
             return;
         }
 
         // Check if the cistern has a manufactured pump
         if (((Cistern) currentElement).manufacturedPump == null) {
-            System.out.println("This cistern does not have a pump available for pickup.");
+            GameLog.log(GameEvent.Kind.REJECTED, "This cistern does not have a pump available for pickup.");
             return;
         }
 
         // Retrieve the manufactured pump from the cistern
         Pump cisternPump = ((Cistern) currentElement).manufacturedPump;
 
-        // Retrieve the selected element from MapGUI
-        Element selectedElement = MapGUI.getSelectedElement();
+        // Retrieve the element selected on the map
+        Element selectedElement = g1.selectedElement;
 
         // Check if the selected element is the pump to be picked up and set its visibility to false
         if (selectedElement instanceof Pump && selectedElement == cisternPump) {
@@ -408,7 +411,7 @@ public class Plumber extends Player {
         pickedUpPump = cisternPump;
 
         // Print confirmation message
-        System.out.println(playerName + " picked up " + pickedUpPump.getName() + " from the cistern.");
+        GameLog.log(GameEvent.Kind.ACTION, "{} picked up {} from the cistern.", playerName, pickedUpPump.getName());
         g1.pumpPickedUp = true;
     }
 
@@ -488,13 +491,13 @@ public class Plumber extends Player {
                         continue;
                     }
                     if (end.currentPipe == pipe) {
-                        g1.endOfPipeList.remove(end);
+                        g1.removeEndOfPipe(end);
                     }
                 }
-                g1.endOfPipeList.add(newEnd1A);
-                g1.endOfPipeList.add(newEnd1B);
-                g1.endOfPipeList.add(newEnd2A);
-                g1.endOfPipeList.add(newEnd2B);
+                g1.addEndOfPipe(newEnd1A);
+                g1.addEndOfPipe(newEnd1B);
+                g1.addEndOfPipe(newEnd2A);
+                g1.addEndOfPipe(newEnd2B);
 
 
 
@@ -510,25 +513,17 @@ public class Plumber extends Player {
                 newPipe2.endsOfPipe[1].setCurrentPipe(newPipe2);
                 newPipe2.endsOfPipe[0].setCurrentPipe(newPipe2);
 
-                newPipe1.leakedAmount=pipe.leakedAmount/2;
-                newPipe2.leakedAmount=pipe.leakedAmount/2;
+                newPipe1.setLeakedAmount(pipe.getLeakedAmount()/2);
+                newPipe2.setLeakedAmount(pipe.getLeakedAmount()/2);
 
                 pipe.setWorks(false);
-                int index = g1.pipeList.indexOf(pipe);
-                int index2 = g1.elementList.indexOf(pipe);
                 /* these are not needed since connectable list order does not effect anything
                 int index3 = pipe.endsOfPipe[0].getConnectedElement().connectablePipes.indexOf(pipe);
                 int index4= pipe.endsOfPipe[1].getConnectedElement().connectablePipes.indexOf(pipe);
                  */
-                g1.elementList.remove(pipe);
-                g1.pipeList.remove(pipe);
-
-                g1.pipeList.add(index, newPipe1);
-                g1.pipeList.add(index + 1, newPipe2);
-
-                g1.elementList.add(index2,newPipe1);
-                g1.elementList.add(index2+1,newPump);
-                g1.elementList.add(index2+2,newPipe2);
+                // the first new pipe takes the place of the old one, since pipes are looked up by their index when inserting ends
+                g1.replacePipe(pipe, newPipe1);
+                g1.addPipe(newPipe2);
                 if(pipe.endsOfPipe[0] != null) {
                     pipe.endsOfPipe[0].getConnectedElement().connectablePipes.remove(pipe);
                 }
@@ -544,20 +539,16 @@ public class Plumber extends Player {
                 newPipe1.endsOfPipe[1].connectToElement(newPump);
                 newPipe2.endsOfPipe[0].connectToElement(newPump);
 
-                newPump.connectedPipes.add(newPipe1);
-                newPump.connectedPipes.add(newPipe2);
-
-                g1.pumpList.add(newPump);
+                g1.addPump(newPump);
 
                 pickedUpPump=null;
-                System.out.println(playerName + " inserted a pump into "+ pipe.getName() + ".");
-                g1.removePipe(pipe);
+                GameLog.log(GameEvent.Kind.ACTION, "{} inserted a pump into {}.", playerName, pipe.getName());
 
             }
         else if(currentElement instanceof Pipe && pickedUpPump==null){
-            System.out.println("You dont have pump picked up to insert here.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You dont have pump picked up to insert here.");
         } else {
-            System.out.println("You have to have picked up a pump and be standing on a pipe.");
+            GameLog.log(GameEvent.Kind.REJECTED, "You have to have picked up a pump and be standing on a pipe.");
         }
     }
 
@@ -568,13 +559,13 @@ public class Plumber extends Player {
      */
     public void fixPump(){
         if(currentElement instanceof Pump && currentElement.isWorking()){
-            System.out.println(playerName + " attempted to fix " + currentElement.getName() + ", but it's already working.");}
+            GameLog.log(GameEvent.Kind.REJECTED, "{} attempted to fix {}, but it's already working.", playerName, currentElement.getName());}
         if (currentElement instanceof Pump) {
             if (!currentElement.isWorking()) {
                 currentElement.setWorks(true);
-                System.out.println(playerName + " fixed " + currentElement.getName());
+                GameLog.log(GameEvent.Kind.ACTION, "{} fixed {}", playerName, currentElement.getName());
             }
         } else {
-            System.out.println("You need to be standing on a broken pump to fix it.");}
+            GameLog.log(GameEvent.Kind.REJECTED, "You need to be standing on a broken pump to fix it.");}
     }
     }
\ No newline at end of file
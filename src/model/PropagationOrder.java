@@ -0,0 +1,126 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the order in which the elements of a game are updated on a tick. Water flows from a
+ * spring into its connected pipes, from a pipe into the element at its second end (a pump only
+ * accepts water from its input pipe), and from a pump into its output pipe. Updating the elements
+ * in topological order of these links lets water travel from the springs to the cisterns in a
+ * single pass, independently of the order of {@link Game#elementList}.
+ * <p>
+ * Elements that are not reachable from a spring follow in list order. Where pumps form a loop,
+ * the loop is entered at the element that comes first in the list, so the order is always deterministic.
+ */
+public final class PropagationOrder {
+    private PropagationOrder() {
+    }
+
+    /**
+     * Computes the propagation order of the elements of the given game.
+     *
+     * @param game the game whose elements are ordered
+     * @return all elements of the game, each exactly once, upstream before downstream
+     */
+    public static List<Element> compute(Game game) {
+        return compute(game.elementList);
+    }
+
+    /**
+     * Computes the propagation order of the given elements. Links to elements that are not in the list are ignored.
+     *
+     * @param elements the elements to order
+     * @return the given elements, each exactly once, upstream before downstream
+     */
+    public static List<Element> compute(List<Element> elements) {
+        Map<Element, List<Element>> downstream = new IdentityHashMap<>(elements.size() * 2);
+        Map<Element, Integer> inDegree = new IdentityHashMap<>(elements.size() * 2);
+        for (Element e : elements) {
+            inDegree.putIfAbsent(e, 0);
+        }
+        for (Element e : elements) {
+            List<Element> next = flowsInto(e);
+            downstream.put(e, next);
+            for (Element n : next) {
+                inDegree.computeIfPresent(n, (k, degree) -> degree + 1);
+            }
+        }
+
+        int total = inDegree.size();
+        List<Element> order = new ArrayList<>(total);
+        Deque<Element> ready = new ArrayDeque<>();
+        for (Element e : elements) {
+            if (e instanceof Spring && inDegree.get(e) == 0) {
+                ready.add(e);
+            }
+        }
+        List<Element> roots = new ArrayList<>();
+        for (Element e : elements) {
+            if (inDegree.get(e) == 0) {
+                roots.add(e);
+            }
+        }
+        int nextRoot = 0;
+        int nextCandidate = 0;
+        while (order.size() < total) {
+            if (ready.isEmpty()) {
+                // Everything reachable so far is ordered: continue with the first element without
+                // upstream elements that is not ordered yet, or else enter a loop at its first element.
+                Element start = null;
+                while (start == null && nextRoot < roots.size()) {
+                    Element root = roots.get(nextRoot++);
+                    if (inDegree.containsKey(root)) {
+                        start = root;
+                    }
+                }
+                if (start == null) {
+                    while (!inDegree.containsKey(elements.get(nextCandidate))) {
+                        nextCandidate++;
+                    }
+                    start = elements.get(nextCandidate);
+                    inDegree.put(start, 0);
+                }
+                ready.add(start);
+            }
+            Element e = ready.poll();
+            if (inDegree.remove(e) == null) {
+                continue; // already ordered
+            }
+            order.add(e);
+            for (Element n : downstream.get(e)) {
+                Integer degree = inDegree.get(n);
+                if (degree != null && degree > 0) {
+                    inDegree.put(n, degree - 1);
+                    if (degree == 1) {
+                        ready.add(n);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Returns the elements that the given element passes water on to.
+     */
+    private static List<Element> flowsInto(Element e) {
+        List<Element> next = new ArrayList<>(2);
+        if (e instanceof Spring) {
+            next.addAll(e.connectedPipes);
+        } else if (e instanceof Pipe pipe) {
+            EndOfPipe end = pipe.endsOfPipe[1];
+            Element connected = end == null ? null : end.getConnectedElement();
+            if (connected != null && (!(connected instanceof Pump pump) || pump.inPipe == pipe)) {
+                next.add(connected);
+            }
+        } else if (e instanceof Pump pump && pump.outPipe != null) {
+            next.add(pump.outPipe);
+        }
+        return next;
+    }
+}
@@ -48,6 +48,10 @@ public class Pump extends Element {
      * the number of turns that the pump will work for.
      */
     private int workingTurns = rand.nextInt(8,24);
+    /**
+     * The pending breakdown of the pump, or null if it has not been scheduled yet.
+     */
+    private TimingWheel.Timeout breakdown;
 
     /**
      * A method used to set the working turns of a pump.
@@ -56,11 +60,48 @@ public class Pump extends Element {
      */
     public void setWorkingTurns(int x){
         workingTurns = x;
+        if (breakdown != null) {
+            TimingWheel wheel = breakdown.getWheel();
+            breakdown.cancel();
+            breakdown = wheel.schedule(workingTurns + 1, this::breakDown);
+        }
+    }
+
+    /**
+     * Schedules the breakdown of the pump once its working turns have run out. The working turns only
+     * start counting down once the pump has an input or output pipe, and are counted only once.
+     * @param wheel the wheel that advances by a tick at the end of every turn
+     */
+    void scheduleBreakdown(TimingWheel wheel) {
+        if (breakdown == null && (inPipe != null || outPipe != null)) {
+            breakdown = wheel.schedule(workingTurns + 1, this::breakDown);
+        }
+    }
+
+    /**
+     * Cancels the pending breakdown of the pump, e.g. because it was removed from the game.
+     */
+    void cancelBreakdown() {
+        if (breakdown != null) {
+            breakdown.cancel();
+        }
+    }
+
+    /**
+     * Breaks the pump down when its working turns have run out. A pump that is already broken at that
+     * point keeps working once it is fixed.
+     */
+    private void breakDown() {
+        if (isWorking()) {
+            setWorks(false);
+            GameLog.log(GameEvent.Kind.ELEMENT, "{} randomly broke down.", this.getName());
+        }
     }
+
     /**
-     * Updates the pump's operational status and handles water transfer based on current conditions.
-     * This method processes the pump's functionality each cycle, checking for operational status,
-     * managing breakdowns, and transferring water if conditions are met.
+     * Handles water transfer based on current conditions.
+     * This method processes the pump's functionality each tick, transferring water
+     * if the pump is working and draining the pipes that are neither its input nor its output.
      */
     @Override
     public void update() {
@@ -69,13 +110,7 @@ public class Pump extends Element {
             ;
         }
         else {
-            if (workingTurns == 0 && isWorking()) {
-                setWorks(false);
-                System.out.println( this.getName() + " randomly broke down.");
-            } else {
-                workingTurns--;
-            }
-            if (!inPipe.isWorking() && isWorking()) {
+            if (inPipe != null && !inPipe.isWorking() && isWorking()) {
                 decrementWater();
             }
             if (isWorking() && getWaterLevel() >= 2) {
@@ -1,7 +1,5 @@
 package model;
 
-import gui.MapGUI;
-
 import java.io.IOException;
 import java.util.Scanner;
 
@@ -36,46 +34,50 @@ public class Saboteur extends Player {
         boolean passflag = false;
         int actionstaken=0;
         long turnStartTime = System.currentTimeMillis();
-        long turnDuration = 10000;
+        long turnDuration = g.turnDuration;
 
 
-            while (System.currentTimeMillis() < turnStartTime + turnDuration && actionstaken < 2) {
-                char choice = Character.toUpperCase(g.getCurrentAction());
-                if (choice != '\0') {
+            while (actionstaken < 2) {
+                PlayerAction action = g.nextAction(g.turnStart, turnStartTime + turnDuration);
+                if (action == null) {
+                    break; // the turn timer ran out
+                }
+                char choice = Character.toUpperCase(action.key());
+                synchronized (g) { // actions must not interleave with a tick of the simulation clock
                     switch (choice) {
                         case 'Q':
-                            System.out.println("You chose: Move to an element");
-                            MapGUI.isMoveActive = true;
+                            GameLog.log(GameEvent.Kind.PROMPT, "You chose: Move to an element");
+                            g.isMoveActive = true;
                             actionstaken++;
                             break;
                         case 'A':
-                            System.out.println("You chose: Change the input pipe of a pump");
-                            changeInputPipe(g);
+                            GameLog.log(GameEvent.Kind.PROMPT, "You chose: Change the input pipe of a pump");
+                            perform("changeInputPipe", () -> changeInputPipe(g));
                             actionstaken++;
                             break;
                         case 'S':
-                            System.out.println("You chose: Change the output pipe of a pump");
-                            changeOutputPipe(g);
+                            GameLog.log(GameEvent.Kind.PROMPT, "You chose: Change the output pipe of a pump");
+                            perform("changeOutputPipe", () -> changeOutputPipe(g));
                             actionstaken++;
                             break;
                         case 'P':
-                            System.out.println("You chose: Puncture a pipe");
-                            puncture();
+                            GameLog.log(GameEvent.Kind.PROMPT, "You chose: Puncture a pipe");
+                            perform("puncture", this::puncture);
                             actionstaken++;
                             break;
                         case 'W':
-                            System.out.println("You chose: Pass Turn");
+                            GameLog.log(GameEvent.Kind.PROMPT, "You chose: Pass Turn");
                             passflag = true;
                             passTurn();
                             return;
                         case 'E':
 
-                            System.out.println("You chose: End the game");
+                            GameLog.log(GameEvent.Kind.PROMPT, "You chose: End the game");
                             g.endGame();
                             exit(0);
                             break;
                         default:
-                            System.out.println("Invalid input, please choose one of the valid options.");
+                            GameLog.log(GameEvent.Kind.REJECTED, "Invalid input, please choose one of the valid options.");
                     }
                 }
 
@@ -99,12 +101,12 @@ public class Saboteur extends Player {
     public void puncture() {
         if (currentElement instanceof Pipe && currentElement.isWorking()) {
             currentElement.setWorks(false);
-            System.out.println(playerName + " punctured " + currentElement.getName());
+            GameLog.log(GameEvent.Kind.ACTION, "{} punctured {}", playerName, currentElement.getName());
             return;
         }
         if (currentElement instanceof Pipe && !currentElement.isWorking()) {
-            System.out.println(playerName + " attempted to puncture" + currentElement.getName() + ",but it is already punctured.");
-        } else System.out.println("You have to be standing on a working pipe to puncture it.");
+            GameLog.log(GameEvent.Kind.REJECTED, "{} attempted to puncture{},but it is already punctured.", playerName, currentElement.getName());
+        } else GameLog.log(GameEvent.Kind.REJECTED, "You have to be standing on a working pipe to puncture it.");
 
     }
 }
\ No newline at end of file
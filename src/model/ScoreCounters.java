@@ -0,0 +1,44 @@
+package model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of the water collected by the cisterns and leaked from the pipes of a game. The
+ * elements add to them the moment water arrives or leaks, so the scores never have to be recomputed
+ * from the elements. The counters are striped, so they can be added to from several threads at once
+ * and read from any thread at any time.
+ */
+public final class ScoreCounters {
+    private final LongAdder collected = new LongAdder();
+    private final LongAdder leaked = new LongAdder();
+
+    void addCollected(long amount) {
+        collected.add(amount);
+    }
+
+    void addLeaked(long amount) {
+        leaked.add(amount);
+    }
+
+    /**
+     * Returns the amount of water that has arrived at the cisterns.
+     */
+    public long getCollected() {
+        return collected.sum();
+    }
+
+    /**
+     * Returns the amount of water that has leaked from the pipes.
+     */
+    public long getLeaked() {
+        return leaked.sum();
+    }
+
+    /**
+     * Sets both totals back to zero, e.g. when a new map is set up.
+     */
+    void reset() {
+        collected.reset();
+        leaked.reset();
+    }
+}
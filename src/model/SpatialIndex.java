@@ -0,0 +1,143 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over the bounds of the items on the map, used to find the item under the mouse
+ * without testing every item. Each item is listed in every cell its bounds overlap, so a lookup only
+ * tests the few items of a single cell, no matter how many items there are on the map.
+ * <p>
+ * Bounds include their right and bottom edges, like {@link Element#contains(int, int)}. When the bounds
+ * of several items contain a point, the item that was added first wins, which is the item a scan
+ * over a list the items were appended to in the same order would find.
+ *
+ * @param <T> the type of the indexed items
+ */
+public final class SpatialIndex<T> {
+    /**
+     * The width and height of a cell when none is given, about the size of a pump on the map.
+     */
+    public static final int DEFAULT_CELL_SIZE = 128;
+
+    private static final class Entry<T> {
+        final T item;
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        final long order;
+
+        Entry(T item, int x, int y, int width, int height, long order) {
+            this.item = item;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.order = order;
+        }
+
+        boolean contains(int px, int py) {
+            return px >= x && px <= x + width && py >= y && py <= y + height;
+        }
+    }
+
+    private final int cellSize;
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private long nextOrder = 0;
+
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param cellSize the width and height of a cell of the grid
+     */
+    public SpatialIndex(int cellSize) {
+        if (cellSize < 1) {
+            throw new IllegalArgumentException("The cell size must be at least 1, was " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Adds an item with the given bounds. An item that is already in the index is moved to the given
+     * bounds and counts as added last.
+     */
+    public void add(T item, int x, int y, int width, int height) {
+        remove(item);
+        Entry<T> entry = new Entry<>(item, x, y, width, height, nextOrder++);
+        entries.put(item, entry);
+        for (int cx = cell(x); cx <= cell(x + width); cx++) {
+            for (int cy = cell(y); cy <= cell(y + height); cy++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes an item. Does nothing if it is not in the index.
+     */
+    public void remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return;
+        }
+        for (int cx = cell(entry.x); cx <= cell(entry.x + entry.width); cx++) {
+            for (int cy = cell(entry.y); cy <= cell(entry.y + entry.height); cy++) {
+                Long key = key(cx, cy);
+                List<Entry<T>> cell = cells.get(key);
+                cell.remove(entry);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the item added first among those whose bounds contain the given point, or null if there is none.
+     */
+    public T itemAt(int x, int y) {
+        List<Entry<T>> cell = cells.get(key(cell(x), cell(y)));
+        if (cell == null) {
+            return null;
+        }
+        Entry<T> found = null;
+        for (Entry<T> entry : cell) {
+            if (entry.contains(x, y) && (found == null || entry.order < found.order)) {
+                found = entry;
+            }
+        }
+        return found == null ? null : found.item;
+    }
+
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        cells.clear();
+        entries.clear();
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static Long key(int cx, int cy) {
+        // Spread the bits, as the hash of a Long folds its halves together and cells along a diagonal
+        // would all land in the same bucket. Multiplying by an odd number keeps the keys distinct.
+        return (((long) cx << 32) | (cy & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+    }
+}
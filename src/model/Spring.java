@@ -14,7 +14,7 @@ public class Spring extends Element {
     /**
      * Tracks the amount of water given to connected pipes.
      */
-    public int givenWater = 0;
+    private int givenWater = 0;
 
     /**
      * Constructs a new model.Spring with a specified name and sets its water capacity to unlimited.
@@ -36,7 +36,25 @@ public class Spring extends Element {
     public void update() {
         for (Pipe pipe : connectedPipes) {
             pipe.incrementWater();
-            givenWater += 2;
+            if (network != null) {
+                network.givenWater[networkId] += 2;
+            } else {
+                givenWater += 2;
+            }
         }
     }
+
+    /**
+     * Returns the amount of water the spring has given to its connected pipes.
+     */
+    public int getGivenWater() {
+        return network != null ? network.givenWater[networkId] : givenWater;
+    }
+
+    /**
+     * Takes back the given water that was counted in a {@link FlowNetwork} while the spring was attached to it.
+     */
+    void restoreGivenWater(int amount) {
+        givenWater = amount;
+    }
 }
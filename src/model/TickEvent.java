@@ -0,0 +1,36 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for a tick of the simulation, from the moment it holds the lock on the game
+ * until the water has been moved. Recorded with the other events of the game in the
+ * {@value #CATEGORY} category, so that it can be lined up with garbage collections and CPU samples
+ * in JDK Mission Control.
+ */
+@Name("pipes.Tick")
+@Label("Tick")
+@Category({TickEvent.CATEGORY, "Engine"})
+@Description("A tick of the simulation, which moves water through the pipe system")
+@StackTrace(false)
+final class TickEvent extends jdk.jfr.Event {
+    /**
+     * The top level category of all flight recorder events of the game.
+     */
+    static final String CATEGORY = "Pipes in the Desert";
+
+    @Label("Tick")
+    long tick;
+
+    @Label("Mode")
+    @Description("How water was moved: by updating the elements, or in a compact or double buffered network")
+    String mode;
+
+    @Label("Elements Updated")
+    @Description("The number of elements updated, or -1 if water was moved in a network")
+    int elementsUpdated;
+}
@@ -0,0 +1,186 @@
+package model;
+
+/**
+ * A hierarchical timing wheel that runs tasks after a given number of ticks. Scheduling, cancelling
+ * and running a task each take constant time, and advancing the wheel by a tick only looks at the
+ * tasks that are due, plus, once every 64 ticks, the tasks of a coarser level that move one level down.
+ * This lets thousands of countdowns run without touching each of them on every tick.
+ * <p>
+ * The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots. A slot of level {@code n} covers
+ * {@code 64^n} ticks, so tasks can be scheduled up to {@code 64^5} ticks ahead.
+ * <p>
+ * The wheel is not thread-safe. The wheel of a {@link GameEngine} is guarded by the lock of its {@link Game}.
+ */
+public final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+    /**
+     * The longest delay a task can be scheduled with.
+     */
+    public static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /**
+     * A task scheduled on a wheel, which can be cancelled until it has run.
+     */
+    public static final class Timeout {
+        private final TimingWheel wheel;
+        private final long deadline;
+        private final Runnable task;
+        private Timeout previous;
+        private Timeout next;
+        private int level;
+        private int slot;
+        private boolean scheduled = true;
+
+        private Timeout(TimingWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Returns the wheel this task was scheduled on.
+         */
+        public TimingWheel getWheel() {
+            return wheel;
+        }
+
+        /**
+         * Returns the tick at which the task runs.
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Returns true until the task has run or was cancelled.
+         */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+
+        /**
+         * Keeps the task from running. Does nothing if it has already run or was cancelled.
+         */
+        public void cancel() {
+            if (scheduled) {
+                wheel.unlink(this);
+                scheduled = false;
+                wheel.size--;
+            }
+        }
+    }
+
+    /**
+     * The first task of every slot, level by level. The tasks of a slot form a doubly linked list
+     * in the order they were scheduled, so they can be cancelled in constant time.
+     */
+    private final Timeout[][] heads = new Timeout[LEVELS][SLOTS];
+    private final Timeout[][] tails = new Timeout[LEVELS][SLOTS];
+    private long currentTick = 0;
+    private int size = 0;
+
+    /**
+     * Returns the number of ticks the wheel has advanced by.
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Returns the number of scheduled tasks.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a task to run when the wheel has advanced by the given number of ticks. Tasks due on
+     * the same tick run in a deterministic order.
+     *
+     * @param delay the number of ticks until the task runs, from 1 up to {@link #MAX_DELAY}
+     * @param task  the task to run
+     * @return a handle to cancel the task with
+     */
+    public Timeout schedule(long delay, Runnable task) {
+        if (delay < 1 || delay > MAX_DELAY) {
+            throw new IllegalArgumentException("The delay must be between 1 and " + MAX_DELAY + ", was " + delay);
+        }
+        Timeout timeout = new Timeout(this, currentTick + delay, task);
+        link(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel by a tick and runs the tasks that are due.
+     */
+    public void advance() {
+        long tick = ++currentTick;
+        // Move the tasks of the coarser slots that start at this tick down to finer levels,
+        // starting from the coarsest, so that they end up in the right slot of level 0.
+        int level = 0;
+        while (level < LEVELS - 1 && ((tick >>> (SLOT_BITS * level)) & SLOT_MASK) == 0) {
+            level++;
+        }
+        for (int l = level; l > 0; l--) {
+            int slot = (int) ((tick >>> (SLOT_BITS * l)) & SLOT_MASK);
+            Timeout t;
+            while ((t = heads[l][slot]) != null) {
+                unlink(t);
+                link(t);
+            }
+        }
+
+        // Tasks may schedule and cancel other tasks while they run, so the slot is emptied one task at a time.
+        int slot = (int) (tick & SLOT_MASK);
+        Timeout t;
+        while ((t = heads[0][slot]) != null) {
+            unlink(t);
+            t.scheduled = false;
+            size--;
+            t.task.run();
+        }
+    }
+
+    /**
+     * Adds a task to the slot of the finest level that can hold its deadline.
+     */
+    private void link(Timeout timeout) {
+        long delay = timeout.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((timeout.deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        timeout.level = level;
+        timeout.slot = slot;
+        Timeout tail = tails[level][slot];
+        timeout.previous = tail;
+        if (tail == null) {
+            heads[level][slot] = timeout;
+        } else {
+            tail.next = timeout;
+        }
+        tails[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        int level = timeout.level;
+        int slot = timeout.slot;
+        if (timeout.previous == null) {
+            heads[level][slot] = timeout.next;
+        } else {
+            timeout.previous.next = timeout.next;
+        }
+        if (timeout.next == null) {
+            tails[level][slot] = timeout.previous;
+        } else {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+    }
+}
@@ -0,0 +1,60 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.Collection;
+
+/**
+ * A flight recorder event for the engine catching up with changes to the layout of the pipe system,
+ * from the moment it notices them before a tick until the parts of the pipe system around them have
+ * been rebuilt.
+ */
+@Name("pipes.TopologyChange")
+@Label("Topology Change")
+@Category({TickEvent.CATEGORY, "Engine"})
+@Description("The pipe system is rebuilt after elements were added, removed or connected differently")
+@StackTrace(false)
+final class TopologyChangeEvent extends jdk.jfr.Event {
+    /**
+     * The most names of elements listed in an event.
+     */
+    private static final int MAX_NAMES = 20;
+
+    @Label("Whole Pipe System")
+    @Description("Whether the whole pipe system was rebuilt rather than the parts around the changed elements")
+    boolean whole;
+
+    @Label("Changed Elements")
+    int changedElements;
+
+    @Label("Removed Elements")
+    int removedElements;
+
+    @Label("Element Names")
+    @Description("The names of the first changed elements")
+    String elements;
+
+    @Label("Components")
+    @Description("The number of separate parts of the pipe system afterwards")
+    int components;
+
+    /**
+     * Lists the names of the first of the given elements.
+     */
+    static String names(Collection<? extends Element> elements) {
+        StringBuilder sb = new StringBuilder();
+        int listed = 0;
+        for (Element e : elements) {
+            if (listed == MAX_NAMES) {
+                sb.append(", ...");
+                break;
+            }
+            sb.append(listed++ > 0 ? ", " : "").append(e.getName());
+        }
+        return sb.toString();
+    }
+}